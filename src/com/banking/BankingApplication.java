@@ -1,5 +1,8 @@
 package com.banking;
 
+import com.banking.controller.LedgerEngine;
+import com.banking.dao.AccountDAO;
+import com.banking.dao.TransactionDAO;
 import com.banking.database.DatabaseManager;
 import com.banking.view.LoginView;
 import javafx.application.Application;
@@ -19,6 +22,16 @@ public class BankingApplication extends Application {
             System.out.println("Loading.");
             SampleDataLoader.loadSampleData();
             
+            if (Boolean.getBoolean(TransactionDAO.WRITE_BEHIND_PROPERTY)) {
+                TransactionDAO.enableWriteBehind();
+                System.out.println("Write-behind journal enabled.");
+            }
+            
+            if (Boolean.getBoolean(LedgerEngine.ENABLED_PROPERTY)) {
+                LedgerEngine.start(new AccountDAO());
+                System.out.println("Ledger engine started.");
+            }
+            
             System.out.println("Database ready!");
             System.out.println("===============================\n");
             
@@ -34,6 +47,29 @@ public class BankingApplication extends Application {
     @Override
     public void stop() {
         System.out.println("\n Shutting down.");
+        //the engine's last postings must reach the database before the pool closes, so a stop that is refused
+        //while the projector retries postings is tried again until they are written
+        boolean retry = true;
+        while (retry) {
+            try {
+                LedgerEngine.stopRunning();
+                retry = false;
+            } catch (IllegalStateException e) {
+                System.err.println("Waiting to stop the ledger engine: " + e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    retry = false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                retry = false;
+            }
+        }
+        //queued transactions must reach the database before the pool closes
+        TransactionDAO.disableWriteBehind();
+        DatabaseManager.getInstance().shutdown();
         System.out.println("ERROR!");
     }
     
@@ -0,0 +1,109 @@
+package com.banking;
+
+import com.banking.model.Transaction;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+//compares rendering transactions the old way (a DateTimeFormatter and String.format per line) with
+//Transaction.toString and with Transaction.formatTo into one reused buffer; needs no database
+//run with: java -cp <classes> com.banking.FormattingBenchmark [transactions]
+public class FormattingBenchmark {
+    private static final int DEFAULT_TRANSACTIONS = 200000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    //total output length, printed at the end so the work cannot be optimised away
+    private static long checksum;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TRANSACTIONS;
+        Transaction[] transactions = sampleTransactions(count);
+
+        for (Transaction transaction : transactions) {
+            if (!legacyToString(transaction).equals(transaction.toString())) {
+                System.err.println("Output differs from the old format for " + transaction.getTransactionId());
+                return;
+            }
+        }
+
+        StringBuilder buffer = new StringBuilder(256);
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            checksum += runLegacy(transactions) + runToString(transactions) + runFormatTo(transactions, buffer);
+        }
+
+        System.out.println("Transactions per round: " + count);
+        report("String.format (old)", transactions.length, () -> runLegacy(transactions));
+        report("toString", transactions.length, () -> runToString(transactions));
+        report("formatTo(buffer)", transactions.length, () -> runFormatTo(transactions, buffer));
+        System.out.println("Checksum: " + checksum);
+    }
+    //runs one variant MEASURED_ROUNDS times and prints the time and bytes allocated per transaction
+    private static void report(String name, int count, Round round) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bestNanos = Long.MAX_VALUE;
+        long allocated = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            checksum += round.run();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            allocated += threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        }
+        System.out.printf("%-22s %8.1f ns/transaction %8.1f bytes/transaction%n", name,
+                          (double) bestNanos / count, (double) allocated / MEASURED_ROUNDS / count);
+    }
+
+    private static long runLegacy(Transaction[] transactions) {
+        long length = 0;
+        for (Transaction transaction : transactions) {
+            length += legacyToString(transaction).length();
+        }
+        return length;
+    }
+
+    private static long runToString(Transaction[] transactions) {
+        long length = 0;
+        for (Transaction transaction : transactions) {
+            length += transaction.toString().length();
+        }
+        return length;
+    }
+    //the way statements are meant to render: one buffer, cleared and reused for every line
+    private static long runFormatTo(Transaction[] transactions, StringBuilder buffer) throws IOException {
+        long length = 0;
+        for (Transaction transaction : transactions) {
+            buffer.setLength(0);
+            transaction.formatTo(buffer);
+            length += buffer.length();
+        }
+        return length;
+    }
+    //Transaction.toString as it was before formatTo, kept as the baseline
+    private static String legacyToString(Transaction transaction) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        return String.format("[%s] %s: BWP %.2f | Balance: BWP %.2f | %s",
+            transaction.getTimestamp().format(formatter), transaction.getTransactionType(),
+            transaction.getAmount(), transaction.getBalanceAfter(), transaction.getDescription());
+    }
+
+    private static Transaction[] sampleTransactions(int count) {
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        Transaction[] transactions = new Transaction[count];
+        for (int i = 0; i < count; i++) {
+            transactions[i] = new Transaction("TXN" + i, "BK01-" + (10000 + i % 500),
+                                              i % 3 == 0 ? "WITHDRAWAL" : "DEPOSIT",
+                                              random.nextInt(1_000_000), random.nextInt(100_000_000),
+                                              "Deposit to account", start.plusSeconds(i * 37L));
+        }
+        return transactions;
+    }
+
+    private interface Round {
+        long run() throws IOException;
+    }
+}
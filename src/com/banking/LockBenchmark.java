@@ -0,0 +1,87 @@
+package com.banking;
+
+import com.banking.controller.AccountLockManager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
+//measures how AccountLockManager throughput grows with threads when postings are spread over many accounts,
+//and how it behaves when every thread posts to the same account; each "posting" is a short in-memory update
+//made under the account's lock, so the lock itself is what is measured. Needs no database
+//run with: java -cp <classes> com.banking.LockBenchmark [accounts] [postingsPerThread]
+public class LockBenchmark {
+    private static final int DEFAULT_ACCOUNTS = 100_000;
+    private static final int DEFAULT_POSTINGS_PER_THREAD = 2_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ACCOUNTS;
+        int postings = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_POSTINGS_PER_THREAD;
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        String[] accountNumbers = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountNumbers[i] = String.format("BK01-%05d", 10000 + i);
+        }
+
+        System.out.println("Processors: " + processors + ", accounts: " + accounts);
+        run(accountNumbers, 1, postings / 4, false);
+        double single = 0;
+        for (int threads = 1; threads <= Math.max(4, processors * 2); threads *= 2) {
+            double perSecond = run(accountNumbers, threads, postings, false);
+            if (threads == 1) {
+                single = perSecond;
+            }
+            System.out.printf("spread  %3d threads %12.0f postings/s  %5.2fx%n", threads, perSecond, perSecond / single);
+        }
+        for (int threads = 1; threads <= Math.max(4, processors * 2); threads *= 2) {
+            System.out.printf("one acc %3d threads %12.0f postings/s%n", threads,
+                              run(accountNumbers, threads, postings / 10, true));
+        }
+    }
+    //runs the threads against a fresh lock manager and returns postings per second
+    private static double run(String[] accountNumbers, int threads, int postingsPerThread, boolean sameAccount)
+            throws InterruptedException {
+        AccountLockManager lockManager = new AccountLockManager(
+            Math.max(256, Runtime.getRuntime().availableProcessors() * 64), 60_000);
+        long[] balances = new long[accountNumbers.length];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers[t] = new Thread(() -> {
+                int index = seed * 7919;
+                try {
+                    start.await();
+                    for (int i = 0; i < postingsPerThread; i++) {
+                        index = sameAccount ? 0 : (index + 104_729) % accountNumbers.length;
+                        AccountLockManager.AccountLock lock = lockManager.lock(accountNumbers[index]);
+                        try (lock) {
+                            balances[index] += 100;
+                        }
+                    }
+                } catch (InterruptedException | TimeoutException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        long total = 0;
+        for (long balance : balances) {
+            total += balance;
+        }
+        if (total != 100L * threads * postingsPerThread) {
+            System.err.println("Lost updates: expected " + 100L * threads * postingsPerThread + ", got " + total);
+        }
+        if (threads > 1) {
+            System.out.println("        " + lockManager.getStatistics());
+        }
+        return (double) threads * postingsPerThread / elapsed * 1e9;
+    }
+}
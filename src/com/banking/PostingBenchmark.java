@@ -0,0 +1,123 @@
+package com.banking;
+
+import com.banking.controller.AccountController;
+import com.banking.controller.LoginController;
+import com.banking.dao.AccountDAO;
+import com.banking.dao.SequenceDAO;
+import com.banking.database.DatabaseManager;
+import com.banking.model.Account;
+import com.banking.model.Bank;
+import com.banking.model.ChequeAccount;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//measures deposit/withdraw latency through AccountController against the local H2 database
+//run with: java -cp <classes>:lib/h2-2.2.224.jar com.banking.PostingBenchmark [postings] [engine]
+//where "engine" posts through the in-memory ledger engine instead of straight to the database
+public class PostingBenchmark {
+    //postings per warmup round; rounds repeat until the JIT has nothing left to compile, because on a machine with
+    //few cores the compiler threads otherwise take the CPU from the measured postings in slices of several ms
+    private static final int WARMUP_POSTINGS = 5000;
+    private static final int MAX_WARMUP_ROUNDS = 40;
+    private static final int DEFAULT_POSTINGS = 20000;
+    private static final double TARGET_P99_MILLIS = 1.0;
+
+    public static void main(String[] args) {
+        int postings = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_POSTINGS;
+        boolean engine = args.length > 1 && "engine".equalsIgnoreCase(args[1]);
+
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        dbManager.initializeDatabase();
+        SampleDataLoader.loadSampleData();
+
+        if (!LoginController.getInstance().login("admin", "admin123").isSuccess()) {
+            System.err.println("Benchmark could not log in as admin");
+            return;
+        }
+        AccountController accountController = new AccountController(new Bank("Bank", "BK01", new SequenceDAO()));
+
+        List<String> accountNumbers = new ArrayList<>();
+        for (Account account : new AccountDAO().findAll()) {
+            if (account instanceof ChequeAccount) {
+                accountNumbers.add(account.getAccountNumber());
+            }
+        }
+        if (accountNumbers.isEmpty()) {
+            System.err.println("Benchmark needs at least one cheque account");
+            return;
+        }
+        if (engine) {
+            System.out.println(accountController.startLedgerEngine().getMessage());
+        }
+
+        warmUp(accountController, accountNumbers);
+        long[] latencies = run(accountController, accountNumbers, postings);
+        Arrays.sort(latencies);
+
+        double p99 = percentileMillis(latencies, 99);
+        System.out.println("Postings:  " + postings + " on " + Runtime.getRuntime().availableProcessors() + " processor(s)");
+        System.out.printf("p50:       %.3f ms%n", percentileMillis(latencies, 50));
+        System.out.printf("p90:       %.3f ms%n", percentileMillis(latencies, 90));
+        System.out.printf("p99:       %.3f ms%n", p99);
+        System.out.printf("max:       %.3f ms%n", latencies[latencies.length - 1] / 1_000_000.0);
+        System.out.println("Target p99 < " + TARGET_P99_MILLIS + " ms: " + (p99 < TARGET_P99_MILLIS ? "PASS" : "FAIL"));
+        if (engine) {
+            System.out.println(accountController.stopLedgerEngine().getStatistics());
+        }
+        System.out.println(dbManager.getPoolStatistics());
+
+        dbManager.shutdown();
+    }
+    //posts warmup rounds until a whole round passes without any JIT compilation, or MAX_WARMUP_ROUNDS
+    private static void warmUp(AccountController accountController, List<String> accountNumbers) {
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        boolean timed = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+        long compileMillis = timed ? compiler.getTotalCompilationTime() : 0;
+        int rounds = 0;
+        while (rounds < MAX_WARMUP_ROUNDS) {
+            run(accountController, accountNumbers, WARMUP_POSTINGS);
+            rounds++;
+            if (!timed) {
+                break;
+            }
+            long previous = compileMillis;
+            compileMillis = compiler.getTotalCompilationTime();
+            if (compileMillis == previous) {
+                break;
+            }
+        }
+        System.out.println("Warmup:    " + rounds * WARMUP_POSTINGS + " postings");
+    }
+    //alternates deposits and withdrawals of the same amount across the accounts and returns each latency in nanoseconds
+    private static long[] run(AccountController accountController, List<String> accountNumbers, int postings) {
+        long[] latencies = new long[postings];
+        int failures = 0;
+        for (int i = 0; i < postings; i++) {
+            String accountNumber = accountNumbers.get(i % accountNumbers.size());
+            boolean deposit = (i / accountNumbers.size()) % 2 == 0;
+
+            long start = System.nanoTime();
+            AccountController.TransactionResult result = deposit
+                ? accountController.deposit(accountNumber, 10.00)
+                : accountController.withdraw(accountNumber, 10.00);
+            latencies[i] = System.nanoTime() - start;
+
+            if (!result.isSuccess()) {
+                failures++;
+            }
+        }
+        if (failures > 0) {
+            System.out.println("Failed postings: " + failures);
+        }
+        return latencies;
+    }
+
+    private static double percentileMillis(long[] sortedLatencies, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
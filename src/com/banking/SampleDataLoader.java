@@ -17,7 +17,7 @@ public class SampleDataLoader {
         
         System.out.println("Loading data.");
        //creates a bank instance to register customers and open accounts 
-    Bank bank = new Bank("Bank", "BK01");
+    Bank bank = new Bank("Bank", "BK01", new SequenceDAO());
     
         try {
             createSampleUsers(userDAO);
@@ -57,7 +57,7 @@ public class SampleDataLoader {
         c.setEmail("general.may@email.bw");
         customerDAO.save(c);
         
-        SavingsAccount s = bank.openSavingsAccount(c.getCustomerId(), 6000, "Gaborone Main");
+        SavingsAccount s = bank.openSavingsAccount(c.getCustomerId(), Money.ofAmount(6000), "Gaborone Main");
         accountDAO.save(s);
     }
     //creates sample customer 2 with an investment account
@@ -67,7 +67,7 @@ public class SampleDataLoader {
         c.setEmail("pako.may@email.bw");
         customerDAO.save(c);
         
-        InvestmentAccount i = bank.openInvestmentAccount(c.getCustomerId(), 12000, "Gaborone Main");
+        InvestmentAccount i = bank.openInvestmentAccount(c.getCustomerId(), Money.ofAmount(12000), "Gaborone Main");
         accountDAO.save(i);
     }
     //creates sample customer 3 with a cheque account
@@ -77,7 +77,7 @@ public class SampleDataLoader {
         c.setEmail("candy.moshokgo@email.bw");
         customerDAO.save(c);
         
-        ChequeAccount ch = bank.openChequeAccount(c.getCustomerId(), 4500, "Gaborone Main",
+        ChequeAccount ch = bank.openChequeAccount(c.getCustomerId(), Money.ofAmount(4500), "Gaborone Main",
             "Letshego Holdings", "Gaborone CBD");
         accountDAO.save(ch);
     }
@@ -87,8 +87,8 @@ public class SampleDataLoader {
         c.setPhoneNumber("76881234");
         customerDAO.save(c);
         
-        SavingsAccount s = bank.openSavingsAccount(c.getCustomerId(), 3000, "Gaborone Main");
-        InvestmentAccount i = bank.openInvestmentAccount(c.getCustomerId(), 7000, "Gaborone Main");
+        SavingsAccount s = bank.openSavingsAccount(c.getCustomerId(), Money.ofAmount(3000), "Gaborone Main");
+        InvestmentAccount i = bank.openInvestmentAccount(c.getCustomerId(), Money.ofAmount(7000), "Gaborone Main");
         accountDAO.save(s);
         accountDAO.save(i);
     }
@@ -99,7 +99,7 @@ public class SampleDataLoader {
         c.setEmail("thapelo.k@email.bw");
         customerDAO.save(c);
         
-        SavingsAccount s = bank.openSavingsAccount(c.getCustomerId(), 9000, "Gaborone Main");
+        SavingsAccount s = bank.openSavingsAccount(c.getCustomerId(), Money.ofAmount(9000), "Gaborone Main");
         accountDAO.save(s);
     }
     //creates sample customer 6 with an investment account
@@ -108,7 +108,7 @@ public class SampleDataLoader {
         c.setPhoneNumber("75556677");
         customerDAO.save(c);
         
-        InvestmentAccount i = bank.openInvestmentAccount(c.getCustomerId(), 18000, "Gaborone Main");
+        InvestmentAccount i = bank.openInvestmentAccount(c.getCustomerId(), Money.ofAmount(18000), "Gaborone Main");
         accountDAO.save(i);
     }
     //creates sample customer 7 with a cheque account
@@ -118,7 +118,7 @@ public class SampleDataLoader {
         c.setEmail("lorato.r@email.bw");
         customerDAO.save(c);
         
-        ChequeAccount ch = bank.openChequeAccount(c.getCustomerId(), 6500, "Gaborone Main",
+        ChequeAccount ch = bank.openChequeAccount(c.getCustomerId(), Money.ofAmount(6500), "Gaborone Main",
             "Stanbic Bank", "Francistown");
         accountDAO.save(ch);
     }
@@ -128,9 +128,9 @@ public class SampleDataLoader {
         c.setPhoneNumber("73445566");
         customerDAO.save(c);
         
-        SavingsAccount s = bank.openSavingsAccount(c.getCustomerId(), 2500, "Gaborone Main");
-        InvestmentAccount i = bank.openInvestmentAccount(c.getCustomerId(), 1500, "Gaborone Main");
-        ChequeAccount ch = bank.openChequeAccount(c.getCustomerId(), 5000, "Gaborone Main",
+        SavingsAccount s = bank.openSavingsAccount(c.getCustomerId(), Money.ofAmount(2500), "Gaborone Main");
+        InvestmentAccount i = bank.openInvestmentAccount(c.getCustomerId(), Money.ofAmount(1500), "Gaborone Main");
+        ChequeAccount ch = bank.openChequeAccount(c.getCustomerId(), Money.ofAmount(5000), "Gaborone Main",
             "Debswana Mining", "Jwaneng");
         accountDAO.save(s);
         accountDAO.save(i);
@@ -143,7 +143,7 @@ public class SampleDataLoader {
         c.setEmail("naledi.m@email.bw");
         customerDAO.save(c);
         
-        SavingsAccount s = bank.openSavingsAccount(c.getCustomerId(), 8200, "Gaborone Main");
+        SavingsAccount s = bank.openSavingsAccount(c.getCustomerId(), Money.ofAmount(8200), "Gaborone Main");
         accountDAO.save(s);
     }
     //creates sample customer 10 with investment and cheque accounts
@@ -152,8 +152,8 @@ public class SampleDataLoader {
         c.setPhoneNumber("77441122");
         customerDAO.save(c);
         
-        InvestmentAccount i = bank.openInvestmentAccount(c.getCustomerId(), 13000, "Gaborone Main");
-        ChequeAccount ch = bank.openChequeAccount(c.getCustomerId(), 5500, "Gaborone Main",
+        InvestmentAccount i = bank.openInvestmentAccount(c.getCustomerId(), Money.ofAmount(13000), "Gaborone Main");
+        ChequeAccount ch = bank.openChequeAccount(c.getCustomerId(), Money.ofAmount(5500), "Gaborone Main",
             "Water Utilities Corporation", "Mochudi");
         accountDAO.save(i);
         accountDAO.save(ch);
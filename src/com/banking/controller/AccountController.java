@@ -1,23 +1,66 @@
 package com.banking.controller;
 
 import com.banking.dao.AccountDAO;
+import com.banking.dao.AccountDAO.PostingResult;
+import com.banking.dao.AccountDAO.PostingStatus;
+import com.banking.dao.AccountDAO.TransferPosting;
+import com.banking.dao.AccountSummaryDAO;
+import com.banking.dao.IdempotencyCache;
+import com.banking.dao.IdempotencyDAO;
+import com.banking.dao.IdempotencyDAO.KeyRecord;
+import com.banking.dao.InterestDAO;
 import com.banking.dao.TransactionDAO;
+import com.banking.interfaces.InterestProgressListener;
 import com.banking.model.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
 
 public class AccountController {
     //
+    //most worker threads any parallel run may use (interest, batch transfers, summary rebuilds, statement
+    //exports and salary runs); each worker holds a pooled connection, so this stays below the pool size
+    private static final int MAX_POOLED_WORKERS = 8;
+    //batch transfers wait only briefly for a busy account and then back off with a random delay, so workers
+    //that collide spread out instead of queueing on the same locks until they all time out together
+    private static final long BATCH_LOCK_TIMEOUT_MS = 50;
+    private static final int MAX_TRANSFER_ATTEMPTS = 8;
+    private static final long MAX_TRANSFER_BACKOFF_MS = 200;
+    
     private AccountDAO accountDAO;
     private TransactionDAO transactionDAO;
+    private InterestDAO interestDAO;
+    private AccountSummaryDAO summaryDAO;
+    private IdempotencyDAO idempotencyDAO;
     private Bank bank;
     private LoginController loginController;
+    //postings on one account are made one at a time, across every controller and thread
+    private AccountLockManager lockManager;
     
     public AccountController(Bank bank) {
         this.accountDAO = new AccountDAO();
         this.transactionDAO = new TransactionDAO();
+        this.interestDAO = new InterestDAO();
+        this.summaryDAO = new AccountSummaryDAO();
+        this.idempotencyDAO = new IdempotencyDAO();
         this.bank = bank;
         this.loginController = LoginController.getInstance();
+        this.lockManager = AccountLockManager.getInstance();
     }
     
     public AccountResult openSavingsAccount(String customerId, double initialBalance, String branch) {
@@ -40,7 +83,7 @@ public class AccountController {
         try {
             SavingsAccount account = bank.openSavingsAccount(
                 customerId.trim(),
-                initialBalance,
+                Money.ofAmount(initialBalance),
                 branch.trim()
             );
             
@@ -76,9 +119,9 @@ public class AccountController {
             return new AccountResult(false, "Customer ID is required", null);
         }
         
-        if (initialBalance < 500.00) {
-            return new AccountResult(false, 
-                "Investment Account requires minimum opening balance of BWP 500.00", null);
+        if (initialBalance < Money.toAmount(InvestmentAccount.getMinimumOpeningBalanceCents())) {
+            return new AccountResult(false, "Investment Account requires minimum opening balance of BWP " +
+                Money.format(InvestmentAccount.getMinimumOpeningBalanceCents()), null);
         }
         
         if (branch == null || branch.trim().isEmpty()) {
@@ -88,7 +131,7 @@ public class AccountController {
         try {
             InvestmentAccount account = bank.openInvestmentAccount(
                 customerId.trim(),
-                initialBalance,
+                Money.ofAmount(initialBalance),
                 branch.trim()
             );
             
@@ -144,7 +187,7 @@ public class AccountController {
         try {
             ChequeAccount account = bank.openChequeAccount(
                 customerId.trim(),
-                initialBalance,
+                Money.ofAmount(initialBalance),
                 branch.trim(),
                 companyName.trim(),
                 companyAddress.trim()
@@ -174,6 +217,11 @@ public class AccountController {
     }
     
     public TransactionResult deposit(String accountNumber, double amount) {
+        return deposit(accountNumber, amount, null);
+    }
+    //a deposit that is posted at most once per idempotency key: repeating it with the same key, e.g. after a
+    //retry, returns the first result instead of posting again. A null key posts every time
+    public TransactionResult deposit(String accountNumber, double amount, String idempotencyKey) {
         if (!loginController.hasPermission("DEPOSIT")) {
             return new TransactionResult(false, "You don't have permission to make deposits", 0);
         }
@@ -187,36 +235,45 @@ public class AccountController {
         }
         
         try {
-            Account account = accountDAO.findByAccountNumber(accountNumber.trim());
-            
-            if (account == null) {
-                return new TransactionResult(false, "Account not found: " + accountNumber, 0);
+            long amountCents = Money.ofAmount(amount);
+            if (amountCents <= 0) {
+                return new TransactionResult(false, "Deposit amount must be at least BWP 0.01", 0);
             }
+            String key = checkIdempotencyKey(idempotencyKey);
+            KeyRecord seen = key == null ? null : idempotencyDAO.findCached(key);
+            if (seen != null) {
+                return repeatedPosting(seen, "DEPOSIT", accountNumber.trim(), amountCents);
+            }
+            PostingResult posting = postAmount(accountNumber.trim(), amountCents, key);
             
-            boolean success = account.deposit(amount);
-            
-            if (success) {
-                accountDAO.updateBalance(account);
-                
-                List<Transaction> transactions = account.getTransactionHistory();
-                if (!transactions.isEmpty()) {
-                    Transaction latestTxn = transactions.get(transactions.size() - 1);
-                    transactionDAO.save(latestTxn);
-                }
-                
-                return new TransactionResult(true, 
-                    String.format("Deposit successful. New balance: BWP %.2f", account.getBalance()),
-                    account.getBalance());
-            } else {
-                return new TransactionResult(false, "Deposit failed", account.getBalance());
+            switch (posting.getStatus()) {
+                case POSTED:
+                    return new TransactionResult(true, 
+                        "Deposit successful. New balance: BWP " + Money.format(posting.getBalanceCents()),
+                        posting.getBalance());
+                case DUPLICATE:
+                    return repeatedPosting(findKeyRecord(key), "DEPOSIT", accountNumber.trim(), amountCents);
+                case ACCOUNT_NOT_FOUND:
+                    return new TransactionResult(false, "Account not found: " + accountNumber, 0);
+                default:
+                    return new TransactionResult(false, "Deposit failed", posting.getBalance());
             }
             
+        } catch (TimeoutException | IllegalArgumentException e) {
+            return new TransactionResult(false, e.getMessage(), 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new TransactionResult(false, "Deposit was interrupted; check the account history before retrying", 0);
         } catch (Exception e) {
             return new TransactionResult(false, "Error processing deposit: " + e.getMessage(), 0);
         }
     }
     
     public TransactionResult withdraw(String accountNumber, double amount) {
+        return withdraw(accountNumber, amount, null);
+    }
+    //a withdrawal that is posted at most once per idempotency key, like deposit
+    public TransactionResult withdraw(String accountNumber, double amount, String idempotencyKey) {
         if (!loginController.hasPermission("WITHDRAW")) {
             return new TransactionResult(false, "You don't have permission to make withdrawals", 0);
         }
@@ -230,43 +287,103 @@ public class AccountController {
         }
         
         try {
-            Account account = accountDAO.findByAccountNumber(accountNumber.trim());
-            
-            if (account == null) {
-                return new TransactionResult(false, "Account not found: " + accountNumber, 0);
+            long amountCents = Money.ofAmount(amount);
+            if (amountCents <= 0) {
+                return new TransactionResult(false, "Withdrawal amount must be at least BWP 0.01", 0);
             }
-            
-            if (account instanceof SavingsAccount) {
-                return new TransactionResult(false, 
-                    "Withdrawals are not permitted on Savings Accounts", 
-                    account.getBalance());
+            String key = checkIdempotencyKey(idempotencyKey);
+            KeyRecord seen = key == null ? null : idempotencyDAO.findCached(key);
+            if (seen != null) {
+                return repeatedPosting(seen, "WITHDRAWAL", accountNumber.trim(), amountCents);
             }
+            //the savings rule and the sufficient-funds check are made by the database update or the engine writer
+            PostingResult posting = postAmount(accountNumber.trim(), -amountCents, key);
             
-            boolean success = account.withdraw(amount);
-            
-            if (success) {
-                accountDAO.updateBalance(account);
-                
-                List<Transaction> transactions = account.getTransactionHistory();
-                if (!transactions.isEmpty()) {
-                    Transaction latestTxn = transactions.get(transactions.size() - 1);
-                    transactionDAO.save(latestTxn);
-                }
-                
-                return new TransactionResult(true, 
-                    String.format("Withdrawal successful. New balance: BWP %.2f", account.getBalance()),
-                    account.getBalance());
-            } else {
-                return new TransactionResult(false, 
-                    "Insufficient balance for withdrawal", 
-                    account.getBalance());
+            switch (posting.getStatus()) {
+                case POSTED:
+                    return new TransactionResult(true, 
+                        "Withdrawal successful. New balance: BWP " + Money.format(posting.getBalanceCents()),
+                        posting.getBalance());
+                case DUPLICATE:
+                    return repeatedPosting(findKeyRecord(key), "WITHDRAWAL", accountNumber.trim(), amountCents);
+                case ACCOUNT_NOT_FOUND:
+                    return new TransactionResult(false, "Account not found: " + accountNumber, 0);
+                case NOT_PERMITTED:
+                    return new TransactionResult(false, 
+                        "Withdrawals are not permitted on Savings Accounts", 
+                        posting.getBalance());
+                case INSUFFICIENT_FUNDS:
+                    return new TransactionResult(false, 
+                        "Insufficient balance for withdrawal", 
+                        posting.getBalance());
+                default:
+                    return new TransactionResult(false, "Withdrawal failed", posting.getBalance());
             }
             
+        } catch (TimeoutException | IllegalArgumentException e) {
+            return new TransactionResult(false, e.getMessage(), 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new TransactionResult(false, "Withdrawal was interrupted; check the account history before retrying", 0);
         } catch (Exception e) {
             return new TransactionResult(false, "Error processing withdrawal: " + e.getMessage(), 0);
         }
     }
     
+    //moves money between two accounts: both balances and both ledger rows are written in one database
+    //transaction, and the two rows share a transfer id. Savings accounts cannot be transferred out of
+    public TransferResult transfer(String fromAccount, String toAccount, double amount) {
+        return transfer(fromAccount, toAccount, amount, null);
+    }
+    //a transfer that is posted at most once per idempotency key, like deposit
+    public TransferResult transfer(String fromAccount, String toAccount, double amount, String idempotencyKey) {
+        if (!loginController.hasPermission("WITHDRAW") || !loginController.hasPermission("DEPOSIT")) {
+            return new TransferResult(false, "You don't have permission to make transfers", null, 0, 0);
+        }
+        
+        try {
+            return postTransfer(fromAccount, toAccount, amount, idempotencyKey, lockManager.getTimeoutMillis());
+        } catch (TimeoutException e) {
+            return new TransferResult(false, e.getMessage(), null, 0, 0);
+        }
+    }
+    //runs a batch of transfers on the given number of worker threads and returns their results in the same
+    //order; a transfer whose accounts stay busy is retried after a growing random delay
+    public List<TransferResult> transferAll(List<TransferRequest> requests, int workers) {
+        List<TransferResult> transferResults = new ArrayList<>(requests.size());
+        if (!loginController.hasPermission("WITHDRAW") || !loginController.hasPermission("DEPOSIT")) {
+            for (int i = 0; i < requests.size(); i++) {
+                transferResults.add(new TransferResult(false, "You don't have permission to make transfers", null, 0, 0));
+            }
+            return transferResults;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, MAX_POOLED_WORKERS)));
+        List<Future<TransferResult>> results = new ArrayList<>();
+        for (TransferRequest request : requests) {
+            results.add(executor.submit(() -> transferWithRetry(request)));
+        }
+        executor.shutdown();
+        
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                transferResults.add(results.get(i).get());
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                //transfers that had not finished may or may not have been posted; the ledger has the answer
+                while (transferResults.size() < requests.size()) {
+                    transferResults.add(new TransferResult(false, "Transfer batch was interrupted", null, 0, 0));
+                }
+                return transferResults;
+            } catch (ExecutionException e) {
+                transferResults.add(new TransferResult(false, 
+                    "Error processing transfer: " + e.getCause().getMessage(), null, 0, 0));
+            }
+        }
+        return transferResults;
+    }
+    
     public BalanceResult getBalance(String accountNumber) {
         if (!loginController.hasPermission("VIEW_BALANCE")) {
             return new BalanceResult(false, "You don't have permission to view balances", 0, null);
@@ -279,7 +396,21 @@ public class AccountController {
         Account account = accountDAO.findByAccountNumber(accountNumber.trim());
         
         if (account != null) {
-            return new BalanceResult(true, "Balance retrieved", account.getBalance(), account);
+            //the database trails the ledger engine, whose balance is the current one
+            double balance = account.getBalance();
+            LedgerEngine engine = LedgerEngine.getRunning();
+            if (engine != null) {
+                try {
+                    PostingResult current = engine.getBalance(account.getAccountNumber());
+                    if (current != null) {
+                        balance = current.getBalance();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return new BalanceResult(false, "Balance lookup was interrupted", 0, null);
+                }
+            }
+            return new BalanceResult(true, "Balance retrieved", balance, account);
         } else {
             return new BalanceResult(false, "Account not found", 0, null);
         }
@@ -296,47 +427,591 @@ public class AccountController {
         
         return transactionDAO.findByAccountNumber(accountNumber.trim());
     }
+    //how often postings had to wait for each other on the same account (or lock stripe)
+    public AccountLockManager.LockStatistics getLockStatistics() {
+        return lockManager.getStatistics();
+    }
+    //the account's last few postings, newest first; served from the recent transaction cache when it can
+    public List<Transaction> getRecentTransactions(String accountNumber, int limit) {
+        if (!loginController.hasPermission("VIEW_TRANSACTIONS")
+                || accountNumber == null || accountNumber.trim().isEmpty()) {
+            return List.of();
+        }
+
+        return transactionDAO.findRecentTransactions(accountNumber.trim(), limit);
+    }
+    //one page of the history, newest first; pass null for the first page, then the page's next-page token
+    public TransactionDAO.TransactionPage getTransactionHistoryPage(String accountNumber, int pageSize,
+                                                                    String pageToken) {
+        if (!loginController.hasPermission("VIEW_TRANSACTIONS")
+                || accountNumber == null || accountNumber.trim().isEmpty()) {
+            return new TransactionDAO.TransactionPage(List.of(), null);
+        }
+
+        return transactionDAO.findPageByAccountNumber(accountNumber.trim(), pageSize, pageToken);
+    }
     
     public InterestResult processMonthlyInterest() {
+        return processMonthlyInterest(YearMonth.now(), 1, null);
+    }
+    //posts interest for the period in chunks of accounts spread over the given number of worker threads;
+    //each chunk is one database transaction and accounts already paid for the period are skipped,
+    //so a run that failed part-way is finished by simply running the same period again
+    public InterestResult processMonthlyInterest(YearMonth period, int workers, InterestProgressListener listener) {
         if (!loginController.hasPermission("OVERRIDE_LIMIT")) {
             return new InterestResult(false, "You don't have permission to process interest", 0, 0);
         }
         
-        try {
-            List<Account> allAccounts = accountDAO.findAll();
-            int accountsProcessed = 0;
-            double totalInterestPaid = 0.0;
-            
-            for (Account account : allAccounts) {
-                if (account instanceof SavingsAccount || account instanceof InvestmentAccount) {
-                    double interestAmount = account.calculateInterest();
-                    
-                    if (interestAmount > 0) {
-                        account.applyInterest();
-                        accountDAO.updateBalance(account);
-                        
-                        List<Transaction> transactions = account.getTransactionHistory();
-                        if (!transactions.isEmpty()) {
-                            Transaction latestTxn = transactions.get(transactions.size() - 1);
-                            transactionDAO.save(latestTxn);
+        if (LedgerEngine.getRunning() != null) {
+            return new InterestResult(false, "Stop the ledger engine before processing interest", 0, 0);
+        }
+        
+        String periodKey = period.toString();
+        List<String[]> chunks = findAccountChunks();
+        
+        //totals are shared by the workers and only touched while holding the lock
+        Object progressLock = new Object();
+        int[] accountsProcessed = { 0 };
+        long[] totalInterestPaid = { 0 };
+        int[] failedChunks = { 0 };
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, MAX_POOLED_WORKERS)));
+        for (String[] chunk : chunks) {
+            executor.submit(() -> {
+                try {
+                    InterestDAO.ChunkResult result;
+                    Lock gate = LedgerEngine.databasePostingLock();
+                    gate.lock();
+                    try {
+                        //an engine started since the run began holds the balances and would not see this chunk
+                        if (LedgerEngine.getRunning() != null) {
+                            throw new IllegalStateException("the ledger engine was started");
+                        }
+                        result = interestDAO.postInterestChunk(periodKey, chunk[0], chunk[1]);
+                    } finally {
+                        gate.unlock();
+                    }
+                    synchronized (progressLock) {
+                        accountsProcessed[0] += result.getAccountsProcessed();
+                        totalInterestPaid[0] = Money.add(totalInterestPaid[0], result.getTotalInterestCents());
+                        if (listener != null) {
+                            listener.chunkCompleted(chunk[1], accountsProcessed[0], Money.toAmount(totalInterestPaid[0]));
                         }
-                        
-                        accountsProcessed++;
-                        totalInterestPaid += interestAmount;
+                    }
+                } catch (Exception e) {
+                    System.err.println("Interest chunk up to " + chunk[1] + " failed: " + e.getMessage());
+                    synchronized (progressLock) {
+                        failedChunks[0]++;
                     }
                 }
+            });
+        }
+        executor.shutdown();
+        
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            return new InterestResult(false, "Interest run for " + periodKey + " was interrupted; run it again to finish",
+                accountsProcessed[0], Money.toAmount(totalInterestPaid[0]));
+        }
+        
+        synchronized (progressLock) {
+            if (failedChunks[0] > 0) {
+                return new InterestResult(false, 
+                    String.format("Interest for %s: %d chunks failed after paying %d accounts (BWP %s); " +
+                        "run the same period again to finish", 
+                        periodKey, failedChunks[0], accountsProcessed[0], Money.format(totalInterestPaid[0])),
+                    accountsProcessed[0], Money.toAmount(totalInterestPaid[0]));
             }
-            
             return new InterestResult(true, 
-                String.format("Interest processed for %d accounts. Total interest: BWP %.2f", 
-                    accountsProcessed, totalInterestPaid),
-                accountsProcessed, 
-                totalInterestPaid);
-                
+                String.format("Interest processed for %d accounts. Total interest: BWP %s", 
+                    accountsProcessed[0], Money.format(totalInterestPaid[0])),
+                accountsProcessed[0], 
+                Money.toAmount(totalInterestPaid[0]));
+        }
+    }
+    
+    //recomputes every account's running totals from the ledger, in chunks of accounts spread over the given
+    //number of worker threads; normally only needed after the ledger was changed outside the DAOs
+    public SummaryRebuildResult rebuildAccountSummaries(int workers) {
+        if (!loginController.hasPermission("OVERRIDE_LIMIT")) {
+            return new SummaryRebuildResult(false, "You don't have permission to rebuild account summaries", 0);
+        }
+        
+        List<String[]> chunks = findAccountChunks();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, MAX_POOLED_WORKERS)));
+        List<Future<Integer>> results = new ArrayList<>();
+        for (String[] chunk : chunks) {
+            results.add(executor.submit(() -> summaryDAO.rebuildChunk(chunk[0], chunk[1])));
+        }
+        executor.shutdown();
+        
+        int summariesWritten = 0;
+        int failedChunks = 0;
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                summariesWritten += results.get(i).get();
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                return new SummaryRebuildResult(false, "Summary rebuild was interrupted; run it again to finish",
+                    summariesWritten);
+            } catch (ExecutionException e) {
+                System.err.println("Summary rebuild up to " + chunks.get(i)[1] + " failed: " + e.getCause().getMessage());
+                failedChunks++;
+            }
+        }
+        
+        if (failedChunks > 0) {
+            return new SummaryRebuildResult(false, 
+                failedChunks + " chunks failed to rebuild; run the rebuild again to finish", summariesWritten);
+        }
+        return new SummaryRebuildResult(true, 
+            "Account summaries rebuilt: " + summariesWritten + " summary rows", summariesWritten);
+    }
+    //credits an employer's payment file of salaries (account_number,amount,reference per line) to cheque
+    //accounts on the given number of worker threads and writes a result row per line to reportFile. runId names
+    //the payment run, e.g. "ACME-2026-03"; passing the same id again resumes a run that stopped part-way, and a
+    //new id pays the file again however much it looks like an earlier one
+    public SalaryRunResult creditSalaries(Path paymentFile, Path reportFile, String runId, int workers) {
+        if (!loginController.hasPermission("DEPOSIT")) {
+            return new SalaryRunResult(false, "You don't have permission to credit salaries", 0, 0, 0, 0, 0, 0, 0);
+        }
+        
+        if (paymentFile == null || reportFile == null) {
+            return new SalaryRunResult(false, "Payment file and report file are required", 0, 0, 0, 0, 0, 0, 0);
+        }
+        
+        if (runId == null || runId.trim().isEmpty()) {
+            return new SalaryRunResult(false, "A run id is required, e.g. the employer and pay period", 
+                                       0, 0, 0, 0, 0, 0, 0);
+        }
+        
+        if (LedgerEngine.getRunning() != null) {
+            return new SalaryRunResult(false, "Stop the ledger engine before a salary run", 0, 0, 0, 0, 0, 0, 0);
+        }
+        
+        SalaryRun run = new SalaryRun(accountDAO, Math.max(1, Math.min(workers, MAX_POOLED_WORKERS)),
+                                      SalaryRun.DEFAULT_BATCH_SIZE, SalaryRun.DEFAULT_QUEUE_CAPACITY);
+        String failure = null;
+        try {
+            run.run(paymentFile, reportFile, runId);
+        } catch (IOException e) {
+            failure = "Salary run stopped: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = "Salary run was interrupted";
+        }
+        
+        if (failure != null) {
+            return new SalaryRunResult(false, failure + "; " + run.getSkipped() + " of " + run.getLines() +
+                " lines were skipped, see the report; running the file again with run id " + runId.trim() +
+                " credits only what is missing",
+                run.getLines(), run.getCredited(), run.getAlreadyCredited(), run.getRejected(), run.getFailed(),
+                run.getSkipped(), Money.toAmount(run.getCreditedCents()));
+        }
+        return new SalaryRunResult(run.getFailed() == 0,
+            "Salaries credited: " + run.getCredited() + " of " + run.getLines() + " lines, BWP " +
+            Money.format(run.getCreditedCents()) + "; " + run.getAlreadyCredited() + " already credited, " +
+            run.getRejected() + " rejected, " + run.getFailed() + " failed",
+            run.getLines(), run.getCredited(), run.getAlreadyCredited(), run.getRejected(), run.getFailed(),
+            run.getSkipped(), Money.toAmount(run.getCreditedCents()));
+    }
+    //switches deposits, withdrawals and transfers of the accounts open now to the in-memory ledger engine (see
+    //LedgerEngine), once database postings under way have finished; interest and salary runs are refused until
+    //it is stopped, as they change balances in the database directly
+    public EngineResult startLedgerEngine() {
+        if (!loginController.hasPermission("OVERRIDE_LIMIT")) {
+            return new EngineResult(false, "You don't have permission to start the ledger engine", null);
+        }
+        
+        try {
+            LedgerEngine engine = LedgerEngine.start(accountDAO);
+            LedgerEngine.EngineStatistics statistics = engine.getStatistics();
+            return new EngineResult(true, "Ledger engine started with " + statistics.getAccounts() + " accounts", 
+                statistics);
+        } catch (IllegalStateException e) {
+            return new EngineResult(false, e.getMessage(), null);
+        }
+    }
+    //stops the ledger engine once everything it accepted is in the database; postings go to the database again.
+    //Refused while postings the database did not take are being tried again, see getEngineStatistics
+    public EngineResult stopLedgerEngine() {
+        if (!loginController.hasPermission("OVERRIDE_LIMIT")) {
+            return new EngineResult(false, "You don't have permission to stop the ledger engine", null);
+        }
+        
+        LedgerEngine engine = LedgerEngine.getRunning();
+        try {
+            if (engine == null || !LedgerEngine.stopRunning()) {
+                return new EngineResult(false, "The ledger engine is not running", null);
+            }
+        } catch (IllegalStateException e) {
+            return new EngineResult(false, e.getMessage(), engine.getStatistics());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new EngineResult(false, "Interrupted while stopping the ledger engine", null);
+        }
+        LedgerEngine.EngineStatistics statistics = engine.getStatistics();
+        return new EngineResult(true, "Ledger engine stopped after " + statistics.getApplied() + " postings", statistics);
+    }
+    //the running engine's counters, or null when postings go to the database
+    public LedgerEngine.EngineStatistics getEngineStatistics() {
+        LedgerEngine engine = LedgerEngine.getRunning();
+        return engine == null ? null : engine.getStatistics();
+    }
+    //deletes idempotency keys older than the idempotency cache keeps them and returns how many; a repeat sent
+    //after its key was deleted is posted again, so keep the TTL longer than any client retries
+    public int purgeIdempotencyKeys() {
+        if (!loginController.hasPermission("OVERRIDE_LIMIT")) {
+            return 0;
+        }
+        long ttlMillis = IdempotencyCache.getInstance().getTtlMillis();
+        return idempotencyDAO.deleteCreatedBefore(LocalDateTime.now().minus(Duration.ofMillis(ttlMillis)));
+    }
+    //writes one account's statement for the period (both ends inclusive) to file, streaming the transactions
+    //from the ledger straight into the file
+    public StatementResult exportStatement(String accountNumber, LocalDateTime from, LocalDateTime to,
+                                           StatementWriter.Format format, Path file) {
+        if (!loginController.hasPermission("VIEW_TRANSACTIONS")) {
+            return new StatementResult(false, "You don't have permission to view transactions", 0);
+        }
+        
+        if (accountNumber == null || accountNumber.trim().isEmpty()) {
+            return new StatementResult(false, "Account number is required", 0);
+        }
+        
+        if (from == null || to == null || from.isAfter(to)) {
+            return new StatementResult(false, "Statement period is invalid", 0);
+        }
+        
+        if (!accountDAO.exists(accountNumber.trim())) {
+            return new StatementResult(false, "Account not found: " + accountNumber, 0);
+        }
+        
+        try {
+            int transactions = writeStatement(new StatementWriter(format), accountNumber.trim(), from, to, file);
+            return new StatementResult(true, 
+                "Statement written to " + file + " with " + transactions + " transactions", 1);
+        } catch (IOException | UncheckedIOException e) {
+            return new StatementResult(false, "Error writing statement: " + e.getMessage(), 0);
+        }
+    }
+    //writes a statement for the period for every account into directory as <account>_<from>_<to>.csv or .txt,
+    //in chunks of accounts spread over the given number of worker threads; each worker streams one statement
+    //at a time through one reused writer, so memory stays the same however many statements are written
+    public StatementResult exportStatements(LocalDateTime from, LocalDateTime to, StatementWriter.Format format,
+                                            Path directory, int workers) {
+        if (!loginController.hasPermission("OVERRIDE_LIMIT")) {
+            return new StatementResult(false, "You don't have permission to export statements", 0);
+        }
+        
+        if (from == null || to == null || from.isAfter(to)) {
+            return new StatementResult(false, "Statement period is invalid", 0);
+        }
+        
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            return new StatementResult(false, "Error creating statement directory: " + e.getMessage(), 0);
+        }
+        
+        String suffix = "_" + from.toLocalDate() + "_" + to.toLocalDate() + format.getExtension();
+        List<String[]> chunks = findAccountChunks();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, MAX_POOLED_WORKERS)));
+        List<Future<int[]>> results = new ArrayList<>();
+        for (String[] chunk : chunks) {
+            results.add(executor.submit(() -> {
+                StatementWriter writer = new StatementWriter(format);
+                int written = 0;
+                int failed = 0;
+                for (String accountNumber : accountDAO.findAccountNumbers(chunk[0], chunk[1])) {
+                    try {
+                        writeStatement(writer, accountNumber, from, to, directory.resolve(accountNumber + suffix));
+                        written++;
+                    } catch (IOException | UncheckedIOException e) {
+                        System.err.println("Statement for " + accountNumber + " failed: " + e.getMessage());
+                        failed++;
+                    }
+                }
+                return new int[] { written, failed };
+            }));
+        }
+        executor.shutdown();
+        
+        int statementsWritten = 0;
+        int failedStatements = 0;
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                int[] result = results.get(i).get();
+                statementsWritten += result[0];
+                failedStatements += result[1];
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                return new StatementResult(false, "Statement export was interrupted; run it again to finish",
+                    statementsWritten);
+            } catch (ExecutionException e) {
+                System.err.println("Statements up to " + chunks.get(i)[1] + " failed: " + e.getCause().getMessage());
+                failedStatements++;
+            }
+        }
+        
+        if (failedStatements > 0) {
+            return new StatementResult(false, 
+                failedStatements + " statements or chunks failed; run the export again to finish", statementsWritten);
+        }
+        return new StatementResult(true, "Statements written: " + statementsWritten, statementsWritten);
+    }
+    //one statement: the opening balance is the balance after the last transaction before the period,
+    //and a statement that could not be finished is deleted rather than left half written
+    private int writeStatement(StatementWriter writer, String accountNumber, LocalDateTime from, LocalDateTime to,
+                               Path file) throws IOException {
+        Transaction last = transactionDAO.findLastBefore(accountNumber, from);
+        writer.begin(file, accountNumber, from, to, last == null ? 0 : last.getBalanceAfterCents());
+        try {
+            if (transactionDAO.forEachInRange(accountNumber, from, to, writer::write) < 0) {
+                throw new IOException("Transactions for " + accountNumber + " could not be read");
+            }
+            return writer.finish(to);
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+    //posts one transfer of a batch with a short lock timeout; a busy account is retried after a random,
+    //doubling backoff so that batch threads colliding on the same accounts spread out instead of queueing
+    private TransferResult transferWithRetry(TransferRequest request) throws InterruptedException {
+        long backoffMillis = 1;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return postTransfer(request.getFromAccount(), request.getToAccount(), request.getAmount(),
+                                    request.getIdempotencyKey(), BATCH_LOCK_TIMEOUT_MS);
+            } catch (TimeoutException e) {
+                if (attempt == MAX_TRANSFER_ATTEMPTS) {
+                    return new TransferResult(false, e.getMessage(), null, 0, 0);
+                }
+            }
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMillis) + 1);
+            backoffMillis = Math.min(backoffMillis * 2, MAX_TRANSFER_BACKOFF_MS);
+        }
+    }
+    //validates and posts one transfer with both accounts locked; the lock manager takes the two locks in a
+    //fixed order, so transfers in opposite directions between the same accounts cannot deadlock
+    private TransferResult postTransfer(String fromAccount, String toAccount, double amount, String idempotencyKey,
+                                        long lockTimeoutMillis) throws TimeoutException {
+        if (fromAccount == null || fromAccount.trim().isEmpty() || toAccount == null || toAccount.trim().isEmpty()) {
+            return new TransferResult(false, "Both account numbers are required", null, 0, 0);
+        }
+        
+        String from = fromAccount.trim();
+        String to = toAccount.trim();
+        if (from.equals(to)) {
+            return new TransferResult(false, "Cannot transfer to the same account", null, 0, 0);
+        }
+        
+        if (amount <= 0) {
+            return new TransferResult(false, "Transfer amount must be positive", null, 0, 0);
+        }
+        
+        try {
+            long amountCents = Money.ofAmount(amount);
+            if (amountCents <= 0) {
+                return new TransferResult(false, "Transfer amount must be at least BWP 0.01", null, 0, 0);
+            }
+            String key = checkIdempotencyKey(idempotencyKey);
+            KeyRecord seen = key == null ? null : idempotencyDAO.findCached(key);
+            if (seen != null) {
+                return repeatedTransfer(seen, from, to, amountCents);
+            }
+            TransferPosting posting = null;
+            while (posting == null) {
+                LedgerEngine engine = LedgerEngine.getRunning();
+                if (engine != null && engine.manages(from) != engine.manages(to)) {
+                    return transferAroundEngine(engine.manages(from) ? to : from);
+                }
+                if (key == null || engine == null) {
+                    posting = transferOnce(engine, from, to, amountCents, key, lockTimeoutMillis);
+                } else if (!engine.claimKey(key)) {
+                    posting = new TransferPosting(PostingStatus.DUPLICATE, null, 0, 0, null, null);
+                } else {
+                    try {
+                        posting = idempotencyDAO.find(key) != null
+                            ? new TransferPosting(PostingStatus.DUPLICATE, null, 0, 0, null, null)
+                            : transferOnce(engine, from, to, amountCents, key, lockTimeoutMillis);
+                    } finally {
+                        engine.releaseKey(key);
+                    }
+                }
+            }
+            
+            switch (posting.getStatus()) {
+                case POSTED:
+                    return transferPosted(posting.getTransferId(), posting.getFromBalanceCents(),
+                                          posting.getToBalanceCents());
+                case DUPLICATE:
+                    return repeatedTransfer(findKeyRecord(key), from, to, amountCents);
+                case ACCOUNT_NOT_FOUND:
+                    return new TransferResult(false, "Account not found: " + from, null, 0, 0);
+                case TO_ACCOUNT_NOT_FOUND:
+                    return new TransferResult(false, "Account not found: " + to, null, 0, 0);
+                case NOT_PERMITTED:
+                    return new TransferResult(false, "Transfers out of Savings Accounts are not permitted", null, 0, 0);
+                case INSUFFICIENT_FUNDS:
+                    return new TransferResult(false, "Insufficient balance for transfer", null, 0, 0);
+                default:
+                    return new TransferResult(false, "Transfer failed", null, 0, 0);
+            }
+            
+        } catch (TimeoutException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            return new TransferResult(false, e.getMessage(), null, 0, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new TransferResult(false, "Transfer was interrupted; check the account history before retrying", 
+                                      null, 0, 0);
         } catch (Exception e) {
-            return new InterestResult(false, 
-                "Error processing interest: " + e.getMessage(), 0, 0);
+            return new TransferResult(false, "Error processing transfer: " + e.getMessage(), null, 0, 0);
+        }
+    }
+    
+    //posts through the ledger engine when it runs and holds the account, otherwise to the database, trying
+    //again if the engine starts or stops meanwhile. While the engine runs, a keyed posting first claims its key
+    //there, as the keys of the engine's own postings reach the database only once projected
+    private PostingResult postAmount(String accountNumber, long amountCents, String key)
+            throws TimeoutException, InterruptedException {
+        PostingResult posting = null;
+        while (posting == null) {
+            LedgerEngine engine = LedgerEngine.getRunning();
+            if (key == null || engine == null) {
+                posting = postAmount(engine, accountNumber, amountCents, key);
+            } else if (!engine.claimKey(key)) {
+                posting = new PostingResult(PostingStatus.DUPLICATE, 0, null);
+            } else {
+                try {
+                    posting = idempotencyDAO.find(key) != null ? new PostingResult(PostingStatus.DUPLICATE, 0, null)
+                                                               : postAmount(engine, accountNumber, amountCents, key);
+                } finally {
+                    engine.releaseKey(key);
+                }
+            }
+        }
+        return posting;
+    }
+    //one try with the engine that was running, or the database if none; null if that changed meanwhile
+    private PostingResult postAmount(LedgerEngine engine, String accountNumber, long amountCents, String key)
+            throws TimeoutException, InterruptedException {
+        if (engine != null && engine.manages(accountNumber)) {
+            return amountCents >= 0 ? engine.postDeposit(accountNumber, amountCents, key)
+                                    : engine.postWithdrawal(accountNumber, -amountCents, key);
+        }
+        AccountLockManager.AccountLock lock = lockManager.lock(accountNumber);
+        try (lock) {
+            Lock gate = LedgerEngine.databasePostingLock();
+            gate.lock();
+            try {
+                if (LedgerEngine.getRunning() != engine) {
+                    return null;
+                }
+                //one database transaction updates the balance and writes the ledger row; no objects are loaded
+                return amountCents >= 0 ? accountDAO.postDeposit(accountNumber, amountCents, key)
+                                        : accountDAO.postWithdrawal(accountNumber, -amountCents, key);
+            } finally {
+                gate.unlock();
+            }
+        }
+    }
+    //one try of a transfer with the engine that was running, which then holds both accounts or neither, or the
+    //database if none; null if that changed meanwhile
+    private TransferPosting transferOnce(LedgerEngine engine, String from, String to, long amountCents, String key,
+                                         long lockTimeoutMillis) throws TimeoutException, InterruptedException {
+        if (engine != null && engine.manages(from)) {
+            return engine.postTransfer(from, to, amountCents, key);
+        }
+        AccountLockManager.AccountLock lock = lockManager.lockAll(List.of(from, to), lockTimeoutMillis);
+        try (lock) {
+            Lock gate = LedgerEngine.databasePostingLock();
+            gate.lock();
+            try {
+                if (LedgerEngine.getRunning() != engine) {
+                    return null;
+                }
+                return accountDAO.postTransfer(from, to, amountCents, key);
+            } finally {
+                gate.unlock();
+            }
+        }
+    }
+    //a transfer between an account the running engine holds and one it does not; the two balances are kept in
+    //different places, so it cannot be posted as one change until the engine is stopped
+    private TransferResult transferAroundEngine(String accountNumber) {
+        if (!accountDAO.exists(accountNumber)) {
+            return new TransferResult(false, "Account not found: " + accountNumber, null, 0, 0);
         }
+        return new TransferResult(false, "Account " + accountNumber + " was opened after the ledger engine " +
+            "started; transfers with it are available once the engine is stopped", null, 0, 0);
+    }
+    //the record of a used key: the running engine's while it has not written it yet, otherwise the database's
+    private KeyRecord findKeyRecord(String key) {
+        LedgerEngine engine = LedgerEngine.getRunning();
+        KeyRecord record = engine == null ? null : engine.findKey(key);
+        return record != null ? record : idempotencyDAO.find(key);
+    }
+    
+    private TransferResult transferPosted(String transferId, long fromBalanceCents, long toBalanceCents) {
+        return new TransferResult(true, 
+            "Transfer " + transferId + " successful. New balance: BWP " + Money.format(fromBalanceCents),
+            transferId, Money.toAmount(fromBalanceCents), Money.toAmount(toBalanceCents));
+    }
+    //null for no key; a key that is too long is refused rather than cut, since two keys could then collide
+    private String checkIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.trim().isEmpty()) {
+            return null;
+        }
+        if (idempotencyKey.trim().length() > IdempotencyDAO.MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key is longer than " + IdempotencyDAO.MAX_KEY_LENGTH +
+                                               " characters");
+        }
+        return idempotencyKey.trim();
+    }
+    //the result of the first posting made with a key, rebuilt from what was recorded for it; a key sent again
+    //with a different account or amount is refused, as the caller has mixed up two requests
+    private TransactionResult repeatedPosting(KeyRecord seen, String requestType, String accountNumber, long amountCents) {
+        if (seen == null) {
+            return new TransactionResult(false, "Idempotency key is in use by another request; try again", 0);
+        }
+        if (!seen.matches(requestType, accountNumber, null, amountCents)) {
+            return new TransactionResult(false, "Idempotency key was already used for a different request", 0);
+        }
+        String operation = "DEPOSIT".equals(requestType) ? "Deposit" : "Withdrawal";
+        return new TransactionResult(true, 
+            operation + " successful. New balance: BWP " + Money.format(seen.getBalanceCents()),
+            Money.toAmount(seen.getBalanceCents()));
+    }
+
+    private TransferResult repeatedTransfer(KeyRecord seen, String fromAccount, String toAccount, long amountCents) {
+        if (seen == null) {
+            return new TransferResult(false, "Idempotency key is in use by another request; try again", null, 0, 0);
+        }
+        if (!seen.matches("TRANSFER", fromAccount, toAccount, amountCents)) {
+            return new TransferResult(false, "Idempotency key was already used for a different request", null, 0, 0);
+        }
+        return transferPosted(seen.getReference(), seen.getBalanceCents(), seen.getToBalanceCents());
+    }
+    //splits the accounts into primary key ranges of AccountDAO.DEFAULT_CHUNK_SIZE for the batch jobs
+    private List<String[]> findAccountChunks() {
+        List<String[]> chunks = new ArrayList<>();
+        String lastAccountNumber = "";
+        String chunkEnd;
+        while ((chunkEnd = accountDAO.findChunkEnd(lastAccountNumber, AccountDAO.DEFAULT_CHUNK_SIZE)) != null) {
+            chunks.add(new String[] { lastAccountNumber, chunkEnd });
+            lastAccountNumber = chunkEnd;
+        }
+        return chunks;
     }
     
     public List<Account> getCustomerAccounts(String customerId) {
@@ -387,6 +1062,102 @@ public class AccountController {
         public double getNewBalance() { return newBalance; }
     }
     
+    public static class TransferResult {
+        private final boolean success;
+        private final String message;
+        private final String transferId;
+        private final double fromBalance;
+        private final double toBalance;
+        
+        public TransferResult(boolean success, String message, String transferId, double fromBalance, double toBalance) {
+            this.success = success;
+            this.message = message;
+            this.transferId = transferId;
+            this.fromBalance = fromBalance;
+            this.toBalance = toBalance;
+        }
+        
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public String getTransferId() { return transferId; }
+        public double getFromBalance() { return fromBalance; }
+        public double getToBalance() { return toBalance; }
+    }
+    //one transfer of a batch passed to transferAll
+    public static class TransferRequest {
+        private final String fromAccount;
+        private final String toAccount;
+        private final double amount;
+        private final String idempotencyKey;
+        
+        public TransferRequest(String fromAccount, String toAccount, double amount) {
+            this(fromAccount, toAccount, amount, null);
+        }
+        
+        public TransferRequest(String fromAccount, String toAccount, double amount, String idempotencyKey) {
+            this.fromAccount = fromAccount;
+            this.toAccount = toAccount;
+            this.amount = amount;
+            this.idempotencyKey = idempotencyKey;
+        }
+        
+        public String getFromAccount() { return fromAccount; }
+        public String getToAccount() { return toAccount; }
+        public double getAmount() { return amount; }
+        public String getIdempotencyKey() { return idempotencyKey; }
+    }
+    
+    public static class EngineResult {
+        private final boolean success;
+        private final String message;
+        private final LedgerEngine.EngineStatistics statistics;
+        
+        public EngineResult(boolean success, String message, LedgerEngine.EngineStatistics statistics) {
+            this.success = success;
+            this.message = message;
+            this.statistics = statistics;
+        }
+        
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public LedgerEngine.EngineStatistics getStatistics() { return statistics; }
+    }
+    
+    public static class SalaryRunResult {
+        private final boolean success;
+        private final String message;
+        private final int lines;
+        private final int credited;
+        private final int alreadyCredited;
+        private final int rejected;
+        private final int failed;
+        private final int skipped;
+        private final double totalCredited;
+        
+        public SalaryRunResult(boolean success, String message, int lines, int credited, int alreadyCredited,
+                               int rejected, int failed, int skipped, double totalCredited) {
+            this.success = success;
+            this.message = message;
+            this.lines = lines;
+            this.credited = credited;
+            this.alreadyCredited = alreadyCredited;
+            this.rejected = rejected;
+            this.failed = failed;
+            this.skipped = skipped;
+            this.totalCredited = totalCredited;
+        }
+        
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public int getLines() { return lines; }
+        public int getCredited() { return credited; }
+        public int getAlreadyCredited() { return alreadyCredited; }
+        public int getRejected() { return rejected; }
+        public int getFailed() { return failed; }
+        public int getSkipped() { return skipped; }
+        public double getTotalCredited() { return totalCredited; }
+    }
+    
     public static class BalanceResult {
         private final boolean success;
         private final String message;
@@ -425,6 +1196,38 @@ public class AccountController {
         public double getTotalInterest() { return totalInterest; }
     }
     
+    public static class SummaryRebuildResult {
+        private final boolean success;
+        private final String message;
+        private final int summariesWritten;
+        
+        public SummaryRebuildResult(boolean success, String message, int summariesWritten) {
+            this.success = success;
+            this.message = message;
+            this.summariesWritten = summariesWritten;
+        }
+        
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public int getSummariesWritten() { return summariesWritten; }
+    }
+    
+    public static class StatementResult {
+        private final boolean success;
+        private final String message;
+        private final int statementsWritten;
+        
+        public StatementResult(boolean success, String message, int statementsWritten) {
+            this.success = success;
+            this.message = message;
+            this.statementsWritten = statementsWritten;
+        }
+        
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public int getStatementsWritten() { return statementsWritten; }
+    }
+    
     public static class AccountStatistics {
         private final int savingsCount;
         private final int investmentCount;
@@ -0,0 +1,230 @@
+package com.banking.controller;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+//serializes postings per account while postings on different accounts run in parallel. Account numbers are
+//hashed onto a fixed array of fair locks (stripes), so memory does not grow with the number of accounts and
+//two accounts only wait for each other when they share a stripe; with many more stripes than threads that is
+//rare. Locks are taken with a timeout so a stuck posting makes others fail instead of hanging the teller.
+//Use with try-with-resources; declaring the lock before the try keeps javac's -Xlint:try quiet about a
+//resource the body never reads:
+//    AccountLockManager.AccountLock lock = lockManager.lock(accountNumber);
+//    try (lock) { ... }
+public class AccountLockManager {
+    //number of stripes, rounded up to a power of two, e.g. -Dbanking.lock.stripes=1024
+    public static final String STRIPES_PROPERTY = "banking.lock.stripes";
+    //how long to wait for a busy account, e.g. -Dbanking.lock.timeout.ms=2000
+    public static final String TIMEOUT_PROPERTY = "banking.lock.timeout.ms";
+    //stripes per available processor by default, so collisions stay rare at any thread count the machine runs well
+    private static final int STRIPES_PER_PROCESSOR = 64;
+    private static final int MIN_STRIPES = 256;
+    private static final long DEFAULT_TIMEOUT_MS = 5000;
+
+    private static AccountLockManager instance;
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final long timeoutMillis;
+
+    //counters exposed through getStatistics; adders so that counting does not become the contended part
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contendedAcquisitions = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+
+    public AccountLockManager(int stripeCount, long timeoutMillis) {
+        if (stripeCount < 1 || timeoutMillis < 0) {
+            throw new IllegalArgumentException("Invalid lock manager settings: stripes=" + stripeCount +
+                                               ", timeout=" + timeoutMillis + "ms");
+        }
+        int size = Integer.highestOneBit(stripeCount);
+        if (size < stripeCount) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock(true);
+        }
+        this.mask = size - 1;
+        this.timeoutMillis = timeoutMillis;
+    }
+    //the lock manager shared by every controller, sized from the system properties
+    public static synchronized AccountLockManager getInstance() {
+        if (instance == null) {
+            int defaultStripes = Math.max(MIN_STRIPES, Runtime.getRuntime().availableProcessors() * STRIPES_PER_PROCESSOR);
+            instance = new AccountLockManager(Integer.getInteger(STRIPES_PROPERTY, defaultStripes),
+                                              Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_MS));
+        }
+        return instance;
+    }
+    //locks one account, waiting up to the timeout; throws TimeoutException if the account stays busy
+    public AccountLock lock(String accountNumber) throws TimeoutException {
+        int stripe = stripeOf(accountNumber);
+        acquire(stripe, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis), timeoutMillis, accountNumber);
+        return new AccountLock(new int[] { stripe });
+    }
+    //locks several accounts together, e.g. both sides of a transfer; stripes are always taken in ascending
+    //order, so two callers locking the same accounts in any order cannot deadlock. The timeout covers all of
+    //them, and nothing stays locked if one cannot be had
+    public AccountLock lockAll(Collection<String> accountNumbers) throws TimeoutException {
+        return lockAll(accountNumbers, timeoutMillis);
+    }
+    //lockAll with its own timeout, e.g. a short one for batch work that backs off and retries instead of queueing
+    public AccountLock lockAll(Collection<String> accountNumbers, long timeoutMillis) throws TimeoutException {
+        int[] ordered = accountNumbers.stream().mapToInt(this::stripeOf).sorted().distinct().toArray();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int locked = 0;
+        try {
+            for (; locked < ordered.length; locked++) {
+                acquire(ordered[locked], deadline, timeoutMillis, String.join(", ", accountNumbers));
+            }
+        } finally {
+            if (locked < ordered.length) {
+                for (int i = locked - 1; i >= 0; i--) {
+                    stripes[ordered[i]].unlock();
+                }
+            }
+        }
+        return new AccountLock(ordered);
+    }
+    //the timeout lock and lockAll use when none is given
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+    //true if the calling thread holds the account's lock, for assertions in code that must run under it
+    public boolean isHeldByCurrentThread(String accountNumber) {
+        return stripes[stripeOf(accountNumber)].isHeldByCurrentThread();
+    }
+    //returns a snapshot of the lock counters
+    public LockStatistics getStatistics() {
+        long contended = contendedAcquisitions.sum();
+        int busy = 0;
+        int waiting = 0;
+        for (ReentrantLock stripe : stripes) {
+            if (stripe.isLocked()) {
+                busy++;
+            }
+            waiting += stripe.getQueueLength();
+        }
+        return new LockStatistics(
+            stripes.length,
+            busy,
+            waiting,
+            acquisitions.sum(),
+            contended,
+            timeouts.sum(),
+            contended == 0 ? 0 : totalWaitNanos.sum() / contended / 1000,
+            maxWaitNanos.get() / 1000
+        );
+    }
+
+    private int stripeOf(String accountNumber) {
+        if (accountNumber == null) {
+            throw new IllegalArgumentException("Account number is required");
+        }
+        int h = accountNumber.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+    //a free stripe is taken without timing anything; a zero-timeout tryLock, unlike tryLock(), still lets
+    //threads that are already queued go first, so the lock stays fair
+    private void acquire(int stripe, long deadline, long timeoutMillis, String accountNumbers) throws TimeoutException {
+        ReentrantLock lock = stripes[stripe];
+        try {
+            if (!lock.tryLock(0, TimeUnit.NANOSECONDS)) {
+                long start = System.nanoTime();
+                boolean acquired = lock.tryLock(deadline - start, TimeUnit.NANOSECONDS);
+                long waited = System.nanoTime() - start;
+                contendedAcquisitions.increment();
+                totalWaitNanos.add(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                if (!acquired) {
+                    timeouts.increment();
+                    throw new TimeoutException("Account " + accountNumbers + " is busy, timed out after " +
+                                               timeoutMillis + " ms");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("Interrupted while waiting for account " + accountNumbers);
+        }
+        acquisitions.increment();
+    }
+
+    //the stripes held for one caller; closing releases them in reverse order
+    public class AccountLock implements AutoCloseable {
+        private final int[] held;
+        private boolean released;
+
+        private AccountLock(int[] held) {
+            this.held = held;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            for (int i = held.length - 1; i >= 0; i--) {
+                stripes[held[i]].unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "AccountLock" + Arrays.toString(held);
+        }
+    }
+
+    //point-in-time view of lock usage; wait times are in microseconds and only count acquisitions that waited
+    public static class LockStatistics {
+        private final int stripes;
+        private final int lockedStripes;
+        private final int waitingThreads;
+        private final long acquisitions;
+        private final long contendedAcquisitions;
+        private final long timeouts;
+        private final long averageWaitMicros;
+        private final long maxWaitMicros;
+
+        public LockStatistics(int stripes, int lockedStripes, int waitingThreads, long acquisitions,
+                              long contendedAcquisitions, long timeouts, long averageWaitMicros, long maxWaitMicros) {
+            this.stripes = stripes;
+            this.lockedStripes = lockedStripes;
+            this.waitingThreads = waitingThreads;
+            this.acquisitions = acquisitions;
+            this.contendedAcquisitions = contendedAcquisitions;
+            this.timeouts = timeouts;
+            this.averageWaitMicros = averageWaitMicros;
+            this.maxWaitMicros = maxWaitMicros;
+        }
+
+        public int getStripes() { return stripes; }
+        public int getLockedStripes() { return lockedStripes; }
+        public int getWaitingThreads() { return waitingThreads; }
+        public long getAcquisitions() { return acquisitions; }
+        public long getContendedAcquisitions() { return contendedAcquisitions; }
+        public long getTimeouts() { return timeouts; }
+        public long getAverageWaitMicros() { return averageWaitMicros; }
+        public long getMaxWaitMicros() { return maxWaitMicros; }
+        //share of acquisitions that had to wait for another posting
+        public double getContentionRate() {
+            return acquisitions == 0 ? 0 : (double) contendedAcquisitions / acquisitions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Locks[Stripes=%d, Locked=%d, Waiting=%d, Acquisitions=%d, Contended=%d (%.1f%%), " +
+                "Timeouts=%d, AvgWait=%dus, MaxWait=%dus]",
+                stripes, lockedStripes, waitingThreads, acquisitions, contendedAcquisitions,
+                getContentionRate() * 100, timeouts, averageWaitMicros, maxWaitMicros);
+        }
+    }
+}
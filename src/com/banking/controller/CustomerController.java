@@ -1,6 +1,8 @@
 package com.banking.controller;
 
 import com.banking.dao.CustomerDAO;
+import com.banking.dao.SequenceDAO;
+import com.banking.interfaces.IdAllocator;
 import com.banking.model.Bank;
 import com.banking.model.Customer;
 
@@ -9,11 +11,13 @@ import java.util.List;
 public class CustomerController {
         // DAO for interacting with customer data in the database
     private CustomerDAO customerDAO;
+    private IdAllocator idAllocator;
     private Bank bank;
     private LoginController loginController;
     // constructor that set up an object connectin it to the data access objct
     public CustomerController(Bank bank) {
         this.customerDAO = new CustomerDAO();
+        this.idAllocator = new SequenceDAO();
         this.bank = bank;
         this.loginController = LoginController.getInstance();
     }
@@ -81,25 +85,10 @@ public class CustomerController {
             return new CustomerResult(false, "Error registering customer: " + e.getMessage(), null);
         }
     }
-    //creates a unique ID for a customer by combining the current time (timestamp) with a random number
+    //creates a unique ID for a customer from the shared customer sequence, so no lookup is needed;
+    //same format as the ids Bank gives out
     private String generateUniqueCustomerId() {
-        String customerId;
-        int attempts = 0;
-        
-        do {
-            long timestamp = System.currentTimeMillis();
-            int random = (int)(Math.random() * 1000);
-            customerId = String.format("CUST-%d%03d", timestamp % 100000, random);
-            attempts++;
-             // Fallback if too many attempts
-            if (attempts > 100) {
-                customerId = "CUST-" + System.currentTimeMillis();
-                break;
-            }
-            
-        } while (customerDAO.exists(customerId)); 
-        
-        return customerId;
+        return String.format("CUST-%04d", idAllocator.nextId(IdAllocator.CUSTOMER_SEQUENCE));
     }
     //chcks customer by id
     public CustomerResult getCustomer(String customerId) {
@@ -0,0 +1,701 @@
+package com.banking.controller;
+
+import com.banking.dao.AccountDAO;
+import com.banking.dao.AccountDAO.PostingResult;
+import com.banking.dao.AccountDAO.PostingStatus;
+import com.banking.dao.AccountDAO.ProjectedPosting;
+import com.banking.dao.AccountDAO.TransferPosting;
+import com.banking.dao.IdempotencyDAO.KeyRecord;
+import com.banking.model.Account;
+import com.banking.model.Money;
+import com.banking.model.Transaction;
+import com.banking.model.TransactionIdGenerator;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//optional engine mode for peak loads: every account is assigned to a shard, and all balance changes of a shard
+//are made by that shard's single writer thread, so postings need no locks and no database round trip.
+//Balances are loaded into arrays when the engine starts. Postings reach the writer through a ring of reusable
+//slots: a poster claims a sequence number with one atomic increment, fills the slot and publishes it; the
+//writer takes slots in sequence order and answers each poster directly. Applied postings are handed to a
+//projector thread that moves the balances and writes the ledger rows in the database in batches, so the
+//database trails the engine by a short delay but receives every posting; one that cannot be written is kept
+//and tried again, never dropped.
+//While the engine runs it owns the balances of the accounts it loaded; accounts opened later are not managed
+//and keep posting through the database. Database postings hold databasePostingLock(), which start() takes
+//exclusively while it loads, so no posting is lost between the load and the engine taking over. Keyed postings
+//claim their key here first (claimKey), as a key the engine posted under is only in the database once
+//projected. stop() drains everything and leaves the database current
+public class LedgerEngine {
+    //starts the engine with the application, e.g. -Dbanking.engine.enabled=true
+    public static final String ENABLED_PROPERTY = "banking.engine.enabled";
+    //number of shards (writer threads), e.g. -Dbanking.engine.shards=4
+    public static final String SHARDS_PROPERTY = "banking.engine.shards";
+    //slots per shard ring, rounded up to a power of two, e.g. -Dbanking.engine.ring.size=65536
+    public static final String RING_SIZE_PROPERTY = "banking.engine.ring.size";
+    //applied postings a shard may have waiting for the database before its writer waits too
+    public static final String PROJECTION_QUEUE_PROPERTY = "banking.engine.projection.queue";
+    private static final int DEFAULT_SHARDS = 1;
+    private static final int DEFAULT_RING_SIZE = 16 * 1024;
+    private static final int DEFAULT_PROJECTION_QUEUE = 256 * 1024;
+    //postings written to the database per transaction
+    private static final int PROJECTION_BATCH_SIZE = 1000;
+    //delay before postings that could not be written are tried again, doubled after each failed try
+    private static final long MIN_RETRY_DELAY_MS = 100;
+    private static final long MAX_RETRY_DELAY_MS = 5000;
+    //busy-wait rounds before a waiting thread parks; kept short so a spinning thread does not take the
+    //processor from the thread it waits for
+    private static final int SPINS = 100;
+    //longest an idle writer parks; posters and stop() unpark it, so this is only a backstop. A short timeout
+    //wakes an idle writer so often that, on few processors, it takes turns away from the posters
+    private static final long WRITER_PARK_MS = 10;
+    //set in a shard's claim counter once it stops taking postings
+    private static final long CLOSED = 1L << 62;
+    //queued by a writer after its last posting
+    private static final ProjectedPosting END_OF_PROJECTION = new ProjectedPosting(null, 0, null, null);
+    //held in the key claims while the request that claimed a key has not posted yet
+    private static final KeyRecord PENDING_KEY = new KeyRecord("", "", "", null, 0, 0, 0, null, LocalDateTime.MIN);
+
+    private static volatile LedgerEngine running;
+    //shared by every posting that changes balances in the database, exclusive while the engine loads them
+    private static final ReadWriteLock databasePostings = new ReentrantReadWriteLock();
+
+    private final AccountDAO accountDAO;
+    private final Shard[] shards;
+    private final int ringSize;
+    private final int projectionQueueSize;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    //keys claimed by requests in progress, and keys the engine posted under until they are projected
+    private final Map<String, KeyRecord> keyClaims = new ConcurrentHashMap<>();
+    //held shared by a transfer from its debit to its credit, and exclusively by stop() to set closing
+    private final ReadWriteLock transfers = new ReentrantReadWriteLock();
+    private boolean closing;
+    //set under the class lock by the one stopRunning call that stops this engine
+    private boolean stopping;
+
+    public LedgerEngine(AccountDAO accountDAO, int shardCount, int ringSize, int projectionQueueSize) {
+        if (shardCount < 1 || ringSize < 1 || projectionQueueSize < 1) {
+            throw new IllegalArgumentException("Invalid ledger engine settings: shards=" + shardCount +
+                                               ", ring=" + ringSize + ", projection queue=" + projectionQueueSize);
+        }
+        int size = Integer.highestOneBit(ringSize);
+        if (size < ringSize) {
+            size <<= 1;
+        }
+        this.accountDAO = accountDAO;
+        this.shards = new Shard[shardCount];
+        this.ringSize = size;
+        this.projectionQueueSize = projectionQueueSize;
+    }
+    //the engine postings go through, or null when postings go straight to the database
+    public static LedgerEngine getRunning() {
+        return running;
+    }
+    //held around every posting that changes balances in the database; the poster must check getRunning() once
+    //it holds it, and leave the accounts the engine manages to the engine
+    public static Lock databasePostingLock() {
+        return databasePostings.readLock();
+    }
+    //loads every account's balance, starts the shard threads and makes this the running engine. Waits for
+    //database postings under way and holds new ones back while it loads, so the loaded balances are current
+    public static synchronized LedgerEngine start(AccountDAO accountDAO) {
+        if (running != null) {
+            throw new IllegalStateException("The ledger engine is already running");
+        }
+        LedgerEngine engine = new LedgerEngine(accountDAO, Integer.getInteger(SHARDS_PROPERTY, DEFAULT_SHARDS),
+                                               Integer.getInteger(RING_SIZE_PROPERTY, DEFAULT_RING_SIZE),
+                                               Integer.getInteger(PROJECTION_QUEUE_PROPERTY, DEFAULT_PROJECTION_QUEUE));
+        Lock lock = databasePostings.writeLock();
+        lock.lock();
+        try {
+            engine.load();
+            running = engine;
+        } finally {
+            lock.unlock();
+        }
+        return engine;
+    }
+    //stops the running engine once every posting it accepted is applied and written to the database; postings
+    //arriving meanwhile wait for it and then go to the database. Returns false if no engine was running; a call
+    //made while another is stopping the engine waits for that stop. Refuses with IllegalStateException while
+    //postings the database failed to take are still being retried; one that fails while stopping is retried
+    //until written, and the stop waits for it
+    public static boolean stopRunning() throws InterruptedException {
+        LedgerEngine engine;
+        boolean stopsIt;
+        synchronized (LedgerEngine.class) {
+            engine = running;
+            if (engine == null) {
+                return false;
+            }
+            stopsIt = !engine.stopping;
+            if (stopsIt) {
+                long unprojected = engine.getStatistics().getUnprojected();
+                if (unprojected > 0) {
+                    throw new IllegalStateException(unprojected + " postings are not in the database yet and are " +
+                        "being tried again; the ledger engine keeps running until they are written");
+                }
+                engine.stopping = true;
+            }
+        }
+        if (!stopsIt) {
+            engine.stopped.await();
+            return true;
+        }
+        engine.stop();
+        synchronized (LedgerEngine.class) {
+            running = null;
+        }
+        //released only now, so a posting that waited for the stop finds no engine running when it tries again
+        engine.stopped.countDown();
+        return true;
+    }
+    //true if the account's balance is held by this engine
+    public boolean manages(String accountNumber) {
+        return shardOf(accountNumber).index.containsKey(accountNumber);
+    }
+    //posts a deposit; null if the account is not managed or the engine stopped, and the database should be used
+    public PostingResult postDeposit(String accountNumber, long amountCents) throws InterruptedException {
+        return post(accountNumber, amountCents, "DEPOSIT", null, null, null, true);
+    }
+    //posts a deposit under a key the caller has claimed; the key is written with the ledger row
+    public PostingResult postDeposit(String accountNumber, long amountCents, String idempotencyKey)
+            throws InterruptedException {
+        return post(accountNumber, amountCents, "DEPOSIT", null, idempotencyKey, null, idempotencyKey == null);
+    }
+    //posts a withdrawal; savings accounts and insufficient funds are rejected by the writer, as by the database
+    public PostingResult postWithdrawal(String accountNumber, long amountCents) throws InterruptedException {
+        return post(accountNumber, -amountCents, "WITHDRAWAL", null, null, null, true);
+    }
+    //posts a withdrawal under a key the caller has claimed
+    public PostingResult postWithdrawal(String accountNumber, long amountCents, String idempotencyKey)
+            throws InterruptedException {
+        return post(accountNumber, -amountCents, "WITHDRAWAL", null, idempotencyKey, null, idempotencyKey == null);
+    }
+    //moves amountCents between two accounts this engine manages, under a key the caller has claimed or none.
+    //The from account's writer applies the debit, with the rules of a withdrawal, then the to account's writer
+    //applies the credit and queues the transfers row and the key with it; a credit that cannot be applied puts
+    //the debit back. Between the two the money is in neither balance. Returns null if the engine stopped and
+    //the database should be used
+    public TransferPosting postTransfer(String fromAccount, String toAccount, long amountCents, String idempotencyKey)
+            throws InterruptedException {
+        Lock lock = transfers.readLock();
+        lock.lock();
+        try {
+            if (!closing) {
+                return transfer(fromAccount, toAccount, amountCents, idempotencyKey);
+            }
+        } finally {
+            lock.unlock();
+        }
+        stopped.await();
+        return null;
+    }
+    //the current balance, read by the writer in turn with the postings, or null if the account is not managed
+    public PostingResult getBalance(String accountNumber) throws InterruptedException {
+        return post(accountNumber, 0, null, null, null, null, true);
+    }
+    //claims an idempotency key for a request about to post while the engine runs; false if another request holds
+    //it, or the engine posted under it and it is not in the database yet (see findKey)
+    public boolean claimKey(String idempotencyKey) {
+        return keyClaims.putIfAbsent(idempotencyKey, PENDING_KEY) == null;
+    }
+    //gives up a claim; a key the engine posted under stays claimed until it is projected
+    public void releaseKey(String idempotencyKey) {
+        keyClaims.remove(idempotencyKey, PENDING_KEY);
+    }
+    //the record of a key the engine posted under that is not in the database yet, or null
+    public KeyRecord findKey(String idempotencyKey) {
+        KeyRecord record = keyClaims.get(idempotencyKey);
+        return record == PENDING_KEY ? null : record;
+    }
+    //returns a snapshot of the engine counters
+    public EngineStatistics getStatistics() {
+        long applied = 0;
+        long projected = 0;
+        long rejected = 0;
+        long unprojected = 0;
+        int accounts = 0;
+        for (Shard shard : shards) {
+            applied += shard.applied.sum();
+            projected += shard.projected.sum();
+            rejected += shard.rejected.sum();
+            unprojected += shard.unprojectedCount;
+            accounts += shard.accountNumbers.length;
+        }
+        return new EngineStatistics(shards.length, accounts, ringSize, applied, rejected, projected, unprojected);
+    }
+
+    private void load() {
+        List<List<Account>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        accountDAO.forEachAccount(account -> byShard.get(shardIndex(account.getAccountNumber())).add(account));
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, byShard.get(i));
+        }
+        for (Shard shard : shards) {
+            shard.writer.start();
+            shard.projector.start();
+        }
+    }
+
+    //closes the rings and waits for the writers and projectors to finish; an interrupt does not cut it short,
+    //as postings waiting for the stop would otherwise wait forever
+    private void stop() {
+        //transfers under way finish both legs; later ones wait for the stop and go to the database
+        Lock lock = transfers.writeLock();
+        lock.lock();
+        try {
+            closing = true;
+        } finally {
+            lock.unlock();
+        }
+        for (Shard shard : shards) {
+            long claimed = shard.next.getAndUpdate(value -> value | CLOSED);
+            if ((claimed & CLOSED) == 0) {
+                shard.closedAt = claimed;
+            }
+            LockSupport.unpark(shard.writer);
+        }
+        boolean interrupted = false;
+        for (Shard shard : shards) {
+            while (shard.writer.isAlive() || shard.projector.isAlive()) {
+                try {
+                    shard.writer.join();
+                    shard.projector.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private TransferPosting transfer(String fromAccount, String toAccount, long amountCents, String idempotencyKey)
+            throws InterruptedException {
+        String transferId = TransactionIdGenerator.getInstance().nextTransferId();
+        PostingResult debit = post(fromAccount, -amountCents, "TRANSFER_OUT",
+            "Transfer to " + toAccount + " (" + transferId + ")", null, null, false);
+        if (debit == null) {
+            return new TransferPosting(PostingStatus.ACCOUNT_NOT_FOUND, null, 0, 0, null, null);
+        }
+        if (!debit.isPosted()) {
+            return new TransferPosting(debit.getStatus(), null, 0, 0, null, null);
+        }
+        PostingResult credit = post(toAccount, amountCents, "TRANSFER_IN",
+            "Transfer from " + fromAccount + " (" + transferId + ")", idempotencyKey,
+            new PendingTransfer(transferId, debit.getTransaction()), false);
+        if (credit != null && credit.isPosted()) {
+            return new TransferPosting(PostingStatus.POSTED, transferId, debit.getBalanceCents(),
+                                       credit.getBalanceCents(), debit.getTransaction(), credit.getTransaction());
+        }
+        //a type of its own, so the ledger, the summaries and statements do not count it as an incoming transfer
+        PostingResult reversal = post(fromAccount, amountCents, "TRANSFER_REVERSAL",
+            "Reversal of transfer " + transferId, null, null, false);
+        if (!reversal.isPosted()) {
+            System.err.println("Error reversing transfer " + transferId + ": BWP " + Money.format(amountCents) + 
+                               " was debited from " + fromAccount + " but not credited");
+        }
+        return new TransferPosting(credit == null ? PostingStatus.TO_ACCOUNT_NOT_FOUND : PostingStatus.FAILED,
+                                   null, 0, 0, null, null);
+    }
+    //hands one posting to its shard's writer and waits for the result. A keyed posting or a transfer leg waits
+    //through interrupts, as the writer may apply it anyway and its key or its other leg must follow
+    private PostingResult post(String accountNumber, long amountCents, String transactionType, String description,
+                               String idempotencyKey, PendingTransfer transfer, boolean interruptible)
+            throws InterruptedException {
+        Shard shard = shardOf(accountNumber);
+        Integer index = shard.index.get(accountNumber);
+        if (index == null) {
+            return null;
+        }
+        long sequence = shard.next.getAndIncrement();
+        if ((sequence & CLOSED) != 0) {
+            //the database is only current once the engine has stopped
+            stopped.await();
+            return null;
+        }
+        //waits for the writer to free the slot this sequence wraps onto
+        for (int spins = 0; sequence - ringSize > shard.consumed; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(1000);
+            }
+        }
+        Ticket ticket = new Ticket();
+        Slot slot = shard.slots[(int) (sequence & (ringSize - 1))];
+        slot.accountIndex = index;
+        slot.amountCents = amountCents;
+        slot.transactionType = transactionType;
+        slot.description = description;
+        slot.idempotencyKey = idempotencyKey;
+        slot.transfer = transfer;
+        slot.ticket = ticket;
+        slot.sequence = sequence;
+        if (shard.writerParked) {
+            LockSupport.unpark(shard.writer);
+        }
+        return ticket.await(interruptible);
+    }
+
+    private Shard shardOf(String accountNumber) {
+        return shards[shardIndex(accountNumber)];
+    }
+
+    private int shardIndex(String accountNumber) {
+        return Math.floorMod(accountNumber.hashCode(), shards.length);
+    }
+
+    //one ring entry; the poster writes the fields and then the sequence, which publishes them to the writer
+    private static class Slot {
+        private volatile long sequence = -1;
+        private int accountIndex;
+        private long amountCents;
+        //null for a balance read
+        private String transactionType;
+        //null for the usual description of a deposit or withdrawal
+        private String description;
+        private String idempotencyKey;
+        //set on the credit leg of a transfer
+        private PendingTransfer transfer;
+        private Ticket ticket;
+    }
+
+    //the applied debit of a transfer, carried by its credit leg so that the writer applying the credit can
+    //queue the transfers row and the transfer's key
+    private static class PendingTransfer {
+        private final String transferId;
+        private final Transaction debit;
+
+        PendingTransfer(String transferId, Transaction debit) {
+            this.transferId = transferId;
+            this.debit = debit;
+        }
+    }
+
+    //a poster waiting for its result; the writer fills it in and wakes the poster only if it went to sleep
+    private static class Ticket {
+        private final Thread poster = Thread.currentThread();
+        private PostingResult result;
+        private volatile boolean done;
+        private volatile boolean parked;
+
+        PostingResult await(boolean interruptible) throws InterruptedException {
+            for (int spins = 0; !done && spins < SPINS; spins++) {
+                Thread.onSpinWait();
+            }
+            boolean interrupted = false;
+            while (!done) {
+                parked = true;
+                if (!done) {
+                    LockSupport.park(this);
+                }
+                if (Thread.interrupted()) {
+                    if (interruptible) {
+                        //the posting may still be applied; callers that are interrupted must check the ledger
+                        throw new InterruptedException("Interrupted while waiting for the ledger engine");
+                    }
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }
+
+        void complete(PostingResult result) {
+            this.result = result;
+            done = true;
+            if (parked) {
+                LockSupport.unpark(poster);
+            }
+        }
+    }
+
+    //the accounts of one shard, the ring its postings arrive on, its writer and its projector
+    private class Shard {
+        private final Map<String, Integer> index = new HashMap<>();
+        private final String[] accountNumbers;
+        private final String[] accountTypes;
+        private final boolean[] savings;
+        private final long[] balances;
+
+        private final Slot[] slots = new Slot[ringSize];
+        //next sequence to hand out; CLOSED is set in it when the engine stops
+        private final AtomicLong next = new AtomicLong();
+        //last sequence the writer has finished with, so its slot may be reused
+        private volatile long consumed = -1;
+        //the claim counter at the moment the engine stopped; the writer finishes everything before it
+        private volatile long closedAt = -1;
+        private volatile boolean writerParked;
+        private final BlockingQueue<ProjectedPosting> projection = new ArrayBlockingQueue<>(projectionQueueSize);
+        private final Thread writer;
+        private final Thread projector;
+        //postings the database did not take, kept by the projector until a later try writes them
+        private final List<ProjectedPosting> unprojected = new ArrayList<>();
+        private volatile int unprojectedCount;
+        private long retryDelayMillis = MIN_RETRY_DELAY_MS;
+        private long retryAt;
+
+        private final LongAdder applied = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder projected = new LongAdder();
+
+        Shard(int number, List<Account> accounts) {
+            int count = accounts.size();
+            accountNumbers = new String[count];
+            accountTypes = new String[count];
+            savings = new boolean[count];
+            balances = new long[count];
+            for (int i = 0; i < count; i++) {
+                Account account = accounts.get(i);
+                index.put(account.getAccountNumber(), i);
+                accountNumbers[i] = account.getAccountNumber();
+                accountTypes[i] = account.getAccountType();
+                savings[i] = "Savings Account".equals(account.getAccountType());
+                balances[i] = account.getBalanceCents();
+            }
+            for (int i = 0; i < ringSize; i++) {
+                slots[i] = new Slot();
+            }
+            writer = new Thread(this::write, "ledger-engine-writer-" + number);
+            projector = new Thread(this::project, "ledger-engine-projector-" + number);
+            writer.setDaemon(true);
+            projector.setDaemon(true);
+        }
+        //applies the slots in sequence order until the engine stops and every claimed slot is done
+        private void write() {
+            long sequence = 0;
+            while (true) {
+                Slot slot = slots[(int) (sequence & (ringSize - 1))];
+                if (slot.sequence == sequence) {
+                    Ticket ticket = slot.ticket;
+                    slot.ticket = null;
+                    PostingResult result;
+                    try {
+                        result = apply(slot);
+                    } catch (RuntimeException e) {
+                        //a dead writer would leave every later poster waiting
+                        System.err.println("Error applying posting in ledger engine: " + e.getMessage());
+                        result = new PostingResult(PostingStatus.FAILED, 0, null);
+                    }
+                    ticket.complete(result);
+                    consumed = sequence;
+                    sequence++;
+                    continue;
+                }
+                long closed = closedAt;
+                if (closed >= 0 && sequence >= closed) {
+                    break;
+                }
+                idle(slot, sequence);
+            }
+            queue(END_OF_PROJECTION);
+        }
+        //spins briefly, then parks until a poster publishes or the engine stops
+        private void idle(Slot slot, long sequence) {
+            for (int spins = 0; spins < SPINS; spins++) {
+                if (slot.sequence == sequence) {
+                    return;
+                }
+                Thread.onSpinWait();
+            }
+            writerParked = true;
+            if (slot.sequence != sequence && closedAt < 0) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(WRITER_PARK_MS));
+            }
+            writerParked = false;
+        }
+
+        private PostingResult apply(Slot slot) {
+            int i = slot.accountIndex;
+            long amountCents = slot.amountCents;
+            long balance = balances[i];
+            if (slot.transactionType == null) {
+                return new PostingResult(PostingStatus.POSTED, balance, null);
+            }
+            if (amountCents < 0 && savings[i]) {
+                rejected.increment();
+                return new PostingResult(PostingStatus.NOT_PERMITTED, balance, null);
+            }
+            if (amountCents < 0 && balance + amountCents < 0) {
+                rejected.increment();
+                return new PostingResult(PostingStatus.INSUFFICIENT_FUNDS, balance, null);
+            }
+            long newBalance;
+            try {
+                newBalance = Money.add(balance, amountCents);
+            } catch (ArithmeticException e) {
+                rejected.increment();
+                return new PostingResult(PostingStatus.FAILED, balance, null);
+            }
+            balances[i] = newBalance;
+            Transaction transaction = new Transaction(
+                Account.generateTransactionId(),
+                accountNumbers[i],
+                slot.transactionType,
+                Math.abs(amountCents),
+                newBalance,
+                slot.description != null ? slot.description
+                    : amountCents >= 0 ? "Deposit to account" : "Withdrawal from " + accountTypes[i],
+                LocalDateTime.now()
+            );
+            TransferPosting transfer = null;
+            KeyRecord keyRecord = null;
+            if (slot.transfer != null) {
+                Transaction debit = slot.transfer.debit;
+                transfer = new TransferPosting(PostingStatus.POSTED, slot.transfer.transferId,
+                                               debit.getBalanceAfterCents(), newBalance, debit, transaction);
+            }
+            if (slot.idempotencyKey != null && transfer != null) {
+                keyRecord = new KeyRecord(slot.idempotencyKey, "TRANSFER", transfer.getDebit().getAccountNumber(),
+                    accountNumbers[i], amountCents, transfer.getFromBalanceCents(), newBalance,
+                    transfer.getTransferId(), transfer.getDebit().getTimestamp());
+            } else if (slot.idempotencyKey != null) {
+                keyRecord = new KeyRecord(slot.idempotencyKey, slot.transactionType, accountNumbers[i], null,
+                    Math.abs(amountCents), newBalance, 0, transaction.getTransactionId(), transaction.getTimestamp());
+            }
+            if (keyRecord != null) {
+                //replaces the poster's claim before the poster hears back, so a repeat finds the result
+                keyClaims.put(keyRecord.getKey(), keyRecord);
+            }
+            applied.increment();
+            queue(new ProjectedPosting(transaction, amountCents, transfer, keyRecord));
+            return new PostingResult(PostingStatus.POSTED, newBalance, transaction);
+        }
+        //waits while the database is too far behind, which in turn holds back the posters
+        private void queue(ProjectedPosting posting) {
+            boolean queued = false;
+            while (!queued) {
+                try {
+                    projection.put(posting);
+                    queued = true;
+                } catch (InterruptedException e) {
+                    //the writer is never interrupted on purpose; dropping the posting is not an option
+                }
+            }
+        }
+        //writes applied postings to the database in batches until the writer has finished and every posting is
+        //written; postings the database did not take are tried again after a delay that grows while it fails
+        private void project() {
+            List<ProjectedPosting> batch = new ArrayList<>(PROJECTION_BATCH_SIZE);
+            boolean end = false;
+            while (!end || !unprojected.isEmpty()) {
+                ProjectedPosting first = null;
+                try {
+                    long waitMillis = retryAt - System.currentTimeMillis();
+                    if (end) {
+                        Thread.sleep(Math.max(waitMillis, 0));
+                    } else if (unprojected.isEmpty()) {
+                        first = projection.take();
+                    } else {
+                        first = projection.poll(waitMillis, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (first != null) {
+                    batch.add(first);
+                    projection.drainTo(batch, PROJECTION_BATCH_SIZE - 1);
+                    if (batch.get(batch.size() - 1) == END_OF_PROJECTION) {
+                        batch.remove(batch.size() - 1);
+                        end = true;
+                    }
+                    if (!batch.isEmpty()) {
+                        write(batch);
+                    }
+                    batch.clear();
+                }
+                if (!unprojected.isEmpty() && System.currentTimeMillis() >= retryAt) {
+                    List<ProjectedPosting> retry = new ArrayList<>(unprojected);
+                    unprojected.clear();
+                    write(retry);
+                    retryDelayMillis = unprojected.isEmpty() ? MIN_RETRY_DELAY_MS
+                                                              : Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MS);
+                    retryAt = System.currentTimeMillis() + retryDelayMillis;
+                }
+            }
+        }
+        //writes postings and keeps those the database did not take; the keys of written ones are in the
+        //database now, so their claims are released
+        private void write(List<ProjectedPosting> postings) {
+            List<ProjectedPosting> failed = accountDAO.projectPostings(postings);
+            projected.add(postings.size() - failed.size());
+            if (!failed.isEmpty() && unprojected.isEmpty()) {
+                retryAt = System.currentTimeMillis() + retryDelayMillis;
+            }
+            unprojected.addAll(failed);
+            unprojectedCount = unprojected.size();
+            Set<ProjectedPosting> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+            kept.addAll(failed);
+            for (ProjectedPosting posting : postings) {
+                if (posting.getKeyRecord() != null && !kept.contains(posting)) {
+                    keyClaims.remove(posting.getKeyRecord().getKey(), posting.getKeyRecord());
+                }
+            }
+        }
+    }
+
+    //point-in-time view of the engine; postings applied but not yet projected are the database's lag
+    public static class EngineStatistics {
+        private final int shards;
+        private final int accounts;
+        private final int ringSize;
+        private final long applied;
+        private final long rejected;
+        private final long projected;
+        private final long unprojected;
+
+        public EngineStatistics(int shards, int accounts, int ringSize, long applied, long rejected, long projected,
+                                long unprojected) {
+            this.shards = shards;
+            this.accounts = accounts;
+            this.ringSize = ringSize;
+            this.applied = applied;
+            this.rejected = rejected;
+            this.projected = projected;
+            this.unprojected = unprojected;
+        }
+
+        public int getShards() { return shards; }
+        public int getAccounts() { return accounts; }
+        public int getRingSize() { return ringSize; }
+        public long getApplied() { return applied; }
+        public long getRejected() { return rejected; }
+        public long getProjected() { return projected; }
+        //postings the database did not take on the first try, which the projector keeps trying
+        public long getUnprojected() { return unprojected; }
+        public long getProjectionLag() { return applied - projected; }
+
+        @Override
+        public String toString() {
+            return String.format("LedgerEngine[Shards=%d, Accounts=%d, Ring=%d, Applied=%d, Rejected=%d, " +
+                "Projected=%d, Lag=%d, Unprojected=%d]", shards, accounts, ringSize, applied, rejected, projected,
+                getProjectionLag(), unprojected);
+        }
+    }
+}
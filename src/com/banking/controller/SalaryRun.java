@@ -0,0 +1,483 @@
+package com.banking.controller;
+
+import com.banking.dao.AccountDAO;
+import com.banking.dao.AccountDAO.PostingResult;
+import com.banking.dao.AccountDAO.PostingStatus;
+import com.banking.dao.AccountDAO.SalaryCredit;
+import com.banking.model.Money;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+
+//credits an employer's payment file of salaries to cheque accounts, one line per credit:
+//    account_number,amount,reference
+//The calling thread only reads lines and hands each one to a lane picked by its account number, so every line
+//of an account goes through the same lane in file order and no two lanes post to the same account. Each lane
+//validates its lines and posts them in batches, one database transaction per batch. Lane queues are bounded:
+//when posting falls behind, the reader waits, so memory stays the same however long the file is.
+//Every line gets one row in the report, written when its batch finishes:
+//    line,account_number,amount,reference,status,transaction_id,balance,message
+//Each credit is posted under an idempotency key made from the caller's run id (e.g. the payroll period and
+//employer), the file name, the line number and the line's account, amount and reference. Running a file again
+//with the same run id after it stopped part-way only credits the lines that were not credited yet; the others
+//are reported ALREADY_CREDITED with their original transaction. A new run id never matches an earlier run, so
+//next month's file is paid even if its name and lines are the same. Keys last until
+//AccountController.purgeIdempotencyKeys removes them. A line that was never posted because the run stopped is
+//reported SKIPPED. A run is used once
+public class SalaryRun {
+    //credits posted per database transaction
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    //lines each lane may have waiting before the reader blocks
+    public static final int DEFAULT_QUEUE_CAPACITY = 2000;
+    public static final int MAX_REFERENCE_LENGTH = 50;
+    //prefix of the idempotency keys of salary credits
+    private static final String KEY_PREFIX = "SAL-";
+    //queued after the last line of the file
+    private static final PaymentLine END = new PaymentLine(0, null);
+
+    private final AccountDAO accountDAO;
+    private final int lanes;
+    private final int batchSize;
+    private final int queueCapacity;
+    //the report and the counters are shared by the lanes and guarded by reportLock
+    private final Object reportLock = new Object();
+    private BufferedWriter report;
+    private volatile IOException reportFailure;
+    //the run id and file name, which every credit key starts from
+    private String keyScope;
+    private int lines;
+    private int credited;
+    private int alreadyCredited;
+    private int rejected;
+    private int failed;
+    private int skipped;
+    private long creditedCents;
+
+    public SalaryRun(AccountDAO accountDAO, int lanes, int batchSize, int queueCapacity) {
+        if (lanes < 1 || batchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid salary run settings: lanes=" + lanes + ", batch=" + batchSize +
+                                               ", queue=" + queueCapacity);
+        }
+        this.accountDAO = accountDAO;
+        this.lanes = lanes;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+    //credits every line of paymentFile under runId and writes the report to reportFile. A header line starting
+    //with "account" and blank lines are skipped. Lines already posted stay posted if the run stops early
+    public void run(Path paymentFile, Path reportFile, String runId) throws IOException, InterruptedException {
+        if (report != null) {
+            throw new IllegalStateException("A salary run can only be used once");
+        }
+        if (runId == null || runId.trim().isEmpty()) {
+            throw new IllegalArgumentException("A salary run needs a run id");
+        }
+        keyScope = runId.trim() + '\n' + paymentFile.getFileName();
+        ExecutorService executor = Executors.newFixedThreadPool(lanes);
+        try (BufferedReader reader = Files.newBufferedReader(paymentFile, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            report = writer;
+            writer.write("line,account_number,amount,reference,status,transaction_id,balance,message");
+            writer.newLine();
+
+            List<BlockingQueue<PaymentLine>> queues = new ArrayList<>(lanes);
+            List<Future<?>> workers = new ArrayList<>(lanes);
+            for (int i = 0; i < lanes; i++) {
+                BlockingQueue<PaymentLine> queue = new ArrayBlockingQueue<>(queueCapacity);
+                queues.add(queue);
+                workers.add(executor.submit(() -> {
+                    runLane(queue);
+                    return null;
+                }));
+            }
+
+            IOException readFailure = null;
+            try {
+                readLines(reader, queues);
+            } catch (IOException e) {
+                readFailure = e;
+            }
+            //lanes finish what was handed to them even if the file could not be read to the end
+            for (BlockingQueue<PaymentLine> queue : queues) {
+                queue.put(END);
+            }
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Salary lane failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+            if (readFailure != null) {
+                throw readFailure;
+            }
+            if (reportFailure != null) {
+                throw reportFailure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public int getLines() {
+        synchronized (reportLock) {
+            return lines;
+        }
+    }
+
+    public int getCredited() {
+        synchronized (reportLock) {
+            return credited;
+        }
+    }
+
+    public int getAlreadyCredited() {
+        synchronized (reportLock) {
+            return alreadyCredited;
+        }
+    }
+
+    public int getRejected() {
+        synchronized (reportLock) {
+            return rejected;
+        }
+    }
+
+    public int getFailed() {
+        synchronized (reportLock) {
+            return failed;
+        }
+    }
+
+    public int getSkipped() {
+        synchronized (reportLock) {
+            return skipped;
+        }
+    }
+
+    public long getCreditedCents() {
+        synchronized (reportLock) {
+            return creditedCents;
+        }
+    }
+
+    //once the run has failed the rest of the file is still read, but only to report its lines as skipped
+    private void readLines(BufferedReader reader, List<BlockingQueue<PaymentLine>> queues)
+            throws IOException, InterruptedException {
+        String text;
+        int lineNumber = 0;
+        List<PaymentLine> unread = new ArrayList<>();
+        while ((text = reader.readLine()) != null) {
+            lineNumber++;
+            if (text.isBlank() || (lineNumber == 1 && text.trim().toLowerCase().startsWith("account"))) {
+                continue;
+            }
+            PaymentLine line = new PaymentLine(lineNumber, text);
+            if (reportFailure != null) {
+                unread.add(line);
+                if (unread.size() == batchSize) {
+                    writeReport(unread, true);
+                    unread.clear();
+                }
+                continue;
+            }
+            int comma = text.indexOf(',');
+            String accountNumber = (comma < 0 ? text : text.substring(0, comma)).trim();
+            //blocks while the lane is full
+            queues.get(Math.floorMod(accountNumber.hashCode(), lanes)).put(line);
+        }
+        if (!unread.isEmpty()) {
+            writeReport(unread, true);
+        }
+    }
+    //takes whatever is queued, up to a batch, and posts it; once the run has failed the lane only reports what
+    //is queued as skipped, so the reader is not left blocked
+    private void runLane(BlockingQueue<PaymentLine> queue) throws InterruptedException {
+        List<PaymentLine> batch = new ArrayList<>(batchSize);
+        boolean end = false;
+        while (!end) {
+            batch.add(queue.take());
+            queue.drainTo(batch, batchSize - 1);
+            if (batch.get(batch.size() - 1) == END) {
+                batch.remove(batch.size() - 1);
+                end = true;
+            }
+            if (!batch.isEmpty() && reportFailure != null) {
+                writeReport(batch, true);
+            } else if (!batch.isEmpty()) {
+                try {
+                    postBatch(batch);
+                } catch (RuntimeException e) {
+                    //stops the run like a report failure; a dead lane would leave the reader blocked
+                    System.err.println("Error posting salary batch: " + e.getMessage());
+                    reportFailure = new IOException("Salary batch failed: " + e.getMessage(), e);
+                    List<PaymentLine> unreported = new ArrayList<>();
+                    for (PaymentLine line : batch) {
+                        if (!line.reported) {
+                            unreported.add(line);
+                        }
+                    }
+                    writeReport(unreported, true);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void postBatch(List<PaymentLine> batch) {
+        List<SalaryCredit> credits = new ArrayList<>(batch.size());
+        for (PaymentLine line : batch) {
+            line.parse(keyScope);
+            if (line.credit != null) {
+                credits.add(line.credit);
+            }
+        }
+
+        List<PostingResult> results;
+        Lock gate = LedgerEngine.databasePostingLock();
+        gate.lock();
+        try {
+            //an engine started since the run began holds the balances and would not see this batch
+            if (LedgerEngine.getRunning() != null) {
+                throw new IllegalStateException("the ledger engine was started");
+            }
+            results = credits.isEmpty() ? List.of() : accountDAO.postSalaries(credits);
+            if (credits.size() > 1 && results.get(0).getStatus() == PostingStatus.FAILED) {
+                //the whole batch was rolled back; post one by one so one bad line does not fail the others
+                results = new ArrayList<>(credits.size());
+                for (SalaryCredit credit : credits) {
+                    results.add(accountDAO.postSalaries(List.of(credit)).get(0));
+                }
+            }
+        } finally {
+            gate.unlock();
+        }
+
+        int next = 0;
+        for (PaymentLine line : batch) {
+            if (line.credit != null) {
+                line.result = results.get(next++);
+            }
+        }
+        writeReport(batch, false);
+    }
+    //writes one report row per line; skipped lines were never posted because the run stopped
+    private void writeReport(List<PaymentLine> batch, boolean skip) {
+        StringBuilder sb = new StringBuilder(batch.size() * 96);
+        int batchCredited = 0;
+        int batchAlreadyCredited = 0;
+        int batchRejected = 0;
+        int batchFailed = 0;
+        int batchSkipped = 0;
+        long batchCents = 0;
+        for (PaymentLine line : batch) {
+            String status;
+            String message;
+            if (skip) {
+                //parsed only to fill in the columns
+                line.parse(keyScope);
+                line.result = null;
+                status = "SKIPPED";
+                message = "Not posted because the run stopped; run the file again to credit it";
+                batchSkipped++;
+            } else if (line.credit == null) {
+                status = "REJECTED";
+                message = line.error;
+            } else if (line.result.isPosted()) {
+                status = "CREDITED";
+                message = "";
+            } else if (line.result.getStatus() == PostingStatus.DUPLICATE && line.result.getTransaction() != null) {
+                status = "ALREADY_CREDITED";
+                message = "Credited on " + line.result.getTransaction().getFormattedTimestamp() + " by an earlier run";
+            } else if (line.result.getStatus() == PostingStatus.DUPLICATE) {
+                status = "REJECTED";
+                message = "Idempotency key was already used for a different request";
+            } else if (line.result.getStatus() == PostingStatus.FAILED) {
+                status = "FAILED";
+                message = "Could not be posted; run the file again to credit it";
+            } else {
+                status = "REJECTED";
+                message = line.result.getStatus() == PostingStatus.NOT_PERMITTED
+                    ? "Salaries can only be credited to Cheque Accounts" : "Account not found";
+            }
+
+            sb.append(line.lineNumber).append(',');
+            appendCsv(sb, line.accountNumber);
+            sb.append(',');
+            appendCsv(sb, line.credit != null ? Money.format(line.credit.getAmountCents()) : line.amount);
+            sb.append(',');
+            appendCsv(sb, line.reference);
+            sb.append(',').append(status).append(',');
+            if (line.result != null && line.result.getTransaction() != null) {
+                sb.append(line.result.getTransaction().getTransactionId()).append(',');
+                sb.append(Money.format(line.result.getBalanceCents()));
+                if (line.result.isPosted()) {
+                    batchCredited++;
+                    batchCents += line.credit.getAmountCents();
+                } else {
+                    batchAlreadyCredited++;
+                }
+            } else {
+                sb.append(',');
+                if ("FAILED".equals(status)) {
+                    batchFailed++;
+                } else if ("REJECTED".equals(status)) {
+                    batchRejected++;
+                }
+            }
+            sb.append(',');
+            appendCsv(sb, message);
+            sb.append(System.lineSeparator());
+        }
+
+        synchronized (reportLock) {
+            lines += batch.size();
+            credited += batchCredited;
+            alreadyCredited += batchAlreadyCredited;
+            rejected += batchRejected;
+            failed += batchFailed;
+            skipped += batchSkipped;
+            creditedCents += batchCents;
+            try {
+                report.write(sb.toString());
+            } catch (IOException e) {
+                //skipped lines are still tried after a failure; only the first is worth reporting
+                if (reportFailure == null) {
+                    System.err.println("Error writing salary report: " + e.getMessage());
+                    reportFailure = e;
+                }
+            }
+        }
+        for (PaymentLine line : batch) {
+            line.reported = true;
+        }
+    }
+
+    private static void appendCsv(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    //one line of the payment file; parsed by its lane, so validation runs in parallel
+    private static class PaymentLine {
+        private final int lineNumber;
+        private final String text;
+        private String accountNumber;
+        private String amount;
+        private String reference;
+        //set when the line is valid, otherwise error says why not
+        private SalaryCredit credit;
+        private String error;
+        private PostingResult result;
+        private boolean parsed;
+        private boolean reported;
+
+        PaymentLine(int lineNumber, String text) {
+            this.lineNumber = lineNumber;
+            this.text = text;
+        }
+
+        void parse(String keyScope) {
+            if (parsed) {
+                return;
+            }
+            parsed = true;
+            //the reference is everything after the second comma, so it may contain commas
+            String[] fields = text.split(",", 3);
+            accountNumber = fields[0].trim();
+            if (fields.length < 3) {
+                error = "Expected account number, amount and reference";
+                return;
+            }
+            amount = fields[1].trim();
+            reference = unquote(fields[2].trim());
+
+            if (accountNumber.isEmpty()) {
+                error = "Account number is required";
+                return;
+            }
+            BigDecimal value;
+            try {
+                value = new BigDecimal(amount);
+            } catch (NumberFormatException e) {
+                error = "Amount is not a number";
+                return;
+            }
+            if (value.signum() <= 0) {
+                error = "Amount must be positive";
+                return;
+            }
+            if (value.stripTrailingZeros().scale() > 2) {
+                error = "Amount has fractions of a cent";
+                return;
+            }
+            if (value.compareTo(Money.toDecimal(Money.MAX_CENTS)) > 0) {
+                error = "Amount out of range";
+                return;
+            }
+            if (reference.isEmpty()) {
+                error = "Reference is required";
+                return;
+            }
+            if (reference.length() > MAX_REFERENCE_LENGTH) {
+                error = "Reference is longer than " + MAX_REFERENCE_LENGTH + " characters";
+                return;
+            }
+            long amountCents = Money.fromDecimal(value.setScale(2));
+            credit = new SalaryCredit(accountNumber, amountCents, reference,
+                                      creditKey(keyScope, lineNumber, accountNumber, amountCents, reference));
+        }
+        //the same line of the same file in the same run always gets the same key; 160 bits of SHA-256 keep it
+        //within the idempotency key column while making two different lines sharing a key practically impossible
+        private static String creditKey(String keyScope, int lineNumber, String accountNumber, long amountCents,
+                                        String reference) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] hash = digest.digest((keyScope + '\n' + lineNumber + '\n' + accountNumber + '\n' + amountCents +
+                                             '\n' + reference).getBytes(StandardCharsets.UTF_8));
+                return KEY_PREFIX + HexFormat.of().formatHex(hash, 0, 20);
+            } catch (NoSuchAlgorithmException e) {
+                //every Java platform has SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static String unquote(String value) {
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                return value.substring(1, value.length() - 1).replace("\"\"", "\"");
+            }
+            return value;
+        }
+    }
+}
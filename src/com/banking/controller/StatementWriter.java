@@ -0,0 +1,247 @@
+package com.banking.controller;
+
+import com.banking.model.Money;
+import com.banking.model.Transaction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//writes account statements one at a time through a FileChannel: a header with the opening balance, one line
+//per transaction as the ledger streams it in, then subtotals per transaction type and the closing balance.
+//Lines are encoded into one reusable buffer, so a writer uses the same memory however long the statement is;
+//a writer is not thread-safe, but one writer can produce any number of statements one after the other
+public class StatementWriter {
+    //bytes collected before each write to the channel
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format {
+        CSV(".csv"), TEXT(".txt");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() { return extension; }
+    }
+
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder line = new StringBuilder(256);
+    //transaction type -> { count, total cents }, in the order the types first appear
+    private final Map<String, long[]> subtotals = new LinkedHashMap<>();
+    private FileChannel channel;
+    private long balanceCents;
+    private int transactionCount;
+
+    public StatementWriter(Format format) {
+        this.format = format;
+    }
+    //starts a statement in file, replacing any earlier one, and writes its header
+    public void begin(Path file, String accountNumber, LocalDateTime from, LocalDateTime to,
+                      long openingBalanceCents) throws IOException {
+        if (channel != null) {
+            throw new IllegalStateException("Previous statement was not finished");
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.clear();
+        subtotals.clear();
+        balanceCents = openingBalanceCents;
+        transactionCount = 0;
+
+        if (format == Format.CSV) {
+            line.append("record,date,transaction_id,type,count,amount,balance,description");
+            writeLine();
+            line.append("OPENING,");
+            Transaction.appendTimestamp(line, from);
+            line.append(",,,,,");
+            Money.appendTo(line, balanceCents);
+            line.append(',');
+            appendCsv(accountNumber);
+            writeLine();
+        } else {
+            line.append("STATEMENT OF ACCOUNT ").append(accountNumber);
+            writeLine();
+            line.append("Period:          ");
+            Transaction.appendTimestamp(line, from);
+            line.append(" to ");
+            Transaction.appendTimestamp(line, to);
+            writeLine();
+            line.append("Opening balance: BWP ");
+            Money.appendTo(line, balanceCents);
+            writeLine();
+            writeLine();
+            line.append("Date");
+            pad(21);
+            line.append("Transaction ID");
+            pad(45);
+            line.append("Type");
+            pad(64);
+            line.append("Amount");
+            pad(79);
+            line.append("Balance");
+            pad(94);
+            line.append("Description");
+            writeLine();
+        }
+    }
+    //adds one transaction; takes transactions oldest first, so the last balance seen is the closing balance
+    public void write(Transaction transaction) {
+        try {
+            writeTransaction(transaction);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeTransaction(Transaction transaction) throws IOException {
+        long amountCents = transaction.getAmountCents();
+        balanceCents = transaction.getBalanceAfterCents();
+        long[] subtotal = subtotals.computeIfAbsent(transaction.getTransactionType(), type -> new long[2]);
+        subtotal[0]++;
+        subtotal[1] += amountCents;
+        transactionCount++;
+
+        if (format == Format.CSV) {
+            line.append("TRANSACTION,");
+            Transaction.appendTimestamp(line, transaction.getTimestamp());
+            line.append(',').append(transaction.getTransactionId()).append(',');
+            appendCsv(transaction.getTransactionType());
+            line.append(",,");
+            Money.appendTo(line, amountCents);
+            line.append(',');
+            Money.appendTo(line, balanceCents);
+            line.append(',');
+            appendCsv(transaction.getDescription());
+        } else {
+            Transaction.appendTimestamp(line, transaction.getTimestamp());
+            pad(21);
+            line.append(transaction.getTransactionId());
+            pad(45);
+            line.append(transaction.getTransactionType());
+            pad(64);
+            Money.appendTo(line, amountCents);
+            pad(79);
+            Money.appendTo(line, balanceCents);
+            pad(94);
+            if (transaction.getDescription() != null) {
+                line.append(transaction.getDescription());
+            }
+        }
+        writeLine();
+    }
+    //writes the subtotals and closing balance, closes the file and returns the number of transactions written
+    public int finish(LocalDateTime to) throws IOException {
+        try {
+            if (format == Format.CSV) {
+                for (Map.Entry<String, long[]> subtotal : subtotals.entrySet()) {
+                    line.append("SUBTOTAL,,,");
+                    appendCsv(subtotal.getKey());
+                    line.append(',').append(subtotal.getValue()[0]).append(',');
+                    Money.appendTo(line, subtotal.getValue()[1]);
+                    line.append(",,");
+                    writeLine();
+                }
+                line.append("CLOSING,");
+                Transaction.appendTimestamp(line, to);
+                line.append(",,,").append(transactionCount).append(",,");
+                Money.appendTo(line, balanceCents);
+                line.append(',');
+                writeLine();
+            } else {
+                writeLine();
+                line.append("Subtotals");
+                writeLine();
+                for (Map.Entry<String, long[]> subtotal : subtotals.entrySet()) {
+                    line.append(subtotal.getKey());
+                    pad(21);
+                    line.append(subtotal.getValue()[0]).append(" transactions");
+                    pad(45);
+                    line.append("BWP ");
+                    Money.appendTo(line, subtotal.getValue()[1]);
+                    writeLine();
+                }
+                line.append("Transactions:    ").append(transactionCount);
+                writeLine();
+                line.append("Closing balance: BWP ");
+                Money.appendTo(line, balanceCents);
+                writeLine();
+            }
+            flush();
+            return transactionCount;
+        } finally {
+            abort();
+        }
+    }
+    //closes the current statement's file without finishing it, e.g. after the ledger could not be read
+    public void abort() throws IOException {
+        line.setLength(0);
+        if (channel != null) {
+            FileChannel closing = channel;
+            channel = null;
+            closing.close();
+        }
+    }
+    //encodes the line into the buffer, writing the buffer to the channel whenever it fills up
+    private void writeLine() throws IOException {
+        line.append(System.lineSeparator());
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        CoderResult result;
+        while ((result = encoder.encode(chars, buffer, true)).isOverflow()) {
+            flush();
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+        line.setLength(0);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    //pads the line with spaces up to the given column, leaving at least one space
+    private void pad(int column) {
+        line.append(' ');
+        while (line.length() < column) {
+            line.append(' ');
+        }
+    }
+    //appends a CSV field, quoted only when it contains a separator, quote or line break
+    private void appendCsv(String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
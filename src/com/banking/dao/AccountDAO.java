@@ -1,21 +1,45 @@
 package com.banking.dao;
 
+import com.banking.dao.IdempotencyDAO.KeyRecord;
 import com.banking.database.DatabaseManager;
 import com.banking.model.*;
 
+import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class AccountDAO {
 
+    //loads each account together with its customer so no extra lookup is needed per row
+    private static final String SELECT_WITH_CUSTOMER =
+        "SELECT a.account_number, a.customer_id, a.account_type, a.balance, a.branch, a.version, " +
+        "a.company_name, a.company_address, " +
+        "c.first_name, c.surname, c.address, c.phone_number, c.email " +
+        "FROM accounts a JOIN customers c ON c.customer_id = a.customer_id ";
+    //accounts per chunk for batch jobs that walk every account
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    //rows fetched per round trip when streaming accounts
+    public static final int DEFAULT_FETCH_SIZE = 500;
+    //customers remembered while streaming, cleared when full so memory stays bounded
+    private static final int STREAM_CUSTOMER_CACHE_SIZE = 1000;
+    //size of the transactions.description column
+    private static final int MAX_DESCRIPTION_LENGTH = 255;
+
     private DatabaseManager dbManager;
-    private CustomerDAO customerDAO;
+    private TransactionDAO transactionDAO;
+    private IdempotencyDAO idempotencyDAO;
     
     public AccountDAO() {
         //sets up connection to the databse
         this.dbManager = DatabaseManager.getInstance();
-        this.customerDAO = new CustomerDAO();// creats customerDAO to fetch customer into whn neede
+        this.transactionDAO = new TransactionDAO();// writes the ledger row in the same transaction as a balance change
+        this.idempotencyDAO = new IdempotencyDAO();
     }
     //adds account to the databse an handles account types
     public boolean save(Account account) {
@@ -28,7 +52,7 @@ public class AccountDAO {
             pstmt.setString(1, account.getAccountNumber());
             pstmt.setString(2, account.getCustomer().getCustomerId());
             pstmt.setString(3, account.getAccountType());
-            pstmt.setDouble(4, account.getBalance());
+            pstmt.setBigDecimal(4, Money.toDecimal(account.getBalanceCents()));
             pstmt.setString(5, account.getBranch());
             
                 if (account instanceof ChequeAccount) {
@@ -50,7 +74,7 @@ public class AccountDAO {
     }
     //looks for an account in the databse an returns objct if found ,otherwise null
     public Account findByAccountNumber(String accountNumber) {
-        String sql = "SELECT * FROM accounts WHERE account_number = ?";
+        String sql = SELECT_WITH_CUSTOMER + "WHERE a.account_number = ?";
         
         try (Connection conn = dbManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -59,7 +83,7 @@ public class AccountDAO {
             ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
-                return createAccountFromResultSet(rs);
+                return createAccountFromResultSet(rs, new HashMap<>());
             }
             
         } catch (SQLException e) {
@@ -71,7 +95,7 @@ public class AccountDAO {
     //gets all acounts linked to a specific customer id
     public List<Account> findByCustomerId(String customerId) {
         List<Account> accounts = new ArrayList<>();
-        String sql = "SELECT * FROM accounts WHERE customer_id = ? ORDER BY date_opened";
+        String sql = SELECT_WITH_CUSTOMER + "WHERE a.customer_id = ? ORDER BY a.date_opened";
         
         try (Connection conn = dbManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -79,8 +103,9 @@ public class AccountDAO {
             pstmt.setString(1, customerId);
             ResultSet rs = pstmt.executeQuery();
             
+            Map<String, Customer> customers = new HashMap<>();
             while (rs.next()) {
-                Account account = createAccountFromResultSet(rs);
+                Account account = createAccountFromResultSet(rs, customers);
                 if (account != null) {
                     accounts.add(account);
                 }
@@ -93,23 +118,416 @@ public class AccountDAO {
         return accounts;
     }
     //changes the balance of account in the databse
+    //only succeeds if nobody else changed the row since the account was loaded (optimistic check on version)
     public boolean updateBalance(Account account) {
-        String sql = "UPDATE accounts SET balance = ? WHERE account_number = ?";
+        String sql = "UPDATE accounts SET balance = ?, version = version + 1 " +
+                     "WHERE account_number = ? AND version = ?";
         
         try (Connection conn = dbManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
-            pstmt.setDouble(1, account.getBalance());
+            pstmt.setBigDecimal(1, Money.toDecimal(account.getBalanceCents()));
             pstmt.setString(2, account.getAccountNumber());
+            pstmt.setLong(3, account.getVersion());
             
             int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+            if (rowsAffected > 0) {
+                account.setVersion(account.getVersion() + 1);
+                return true;
+            }
+            System.err.println("Account " + account.getAccountNumber() + " was changed by another user, balance not updated");
+            return false;
             
         } catch (SQLException e) {
             System.err.println("Error updating account balance: " + e.getMessage());
             return false;
         }
     }
+    //posts a deposit straight against the accounts table without loading the Account or Customer
+    public PostingResult postDeposit(String accountNumber, long amountCents) {
+        return post(accountNumber, amountCents, "DEPOSIT", null);
+    }
+    //posts a deposit under an idempotency key; DUPLICATE means the key was used before and nothing was posted
+    public PostingResult postDeposit(String accountNumber, long amountCents, String idempotencyKey) {
+        return post(accountNumber, amountCents, "DEPOSIT", idempotencyKey);
+    }
+    //posts a withdrawal; savings accounts and insufficient funds are rejected by the update itself
+    public PostingResult postWithdrawal(String accountNumber, long amountCents) {
+        return post(accountNumber, -amountCents, "WITHDRAWAL", null);
+    }
+    //posts a withdrawal under an idempotency key
+    public PostingResult postWithdrawal(String accountNumber, long amountCents, String idempotencyKey) {
+        return post(accountNumber, -amountCents, "WITHDRAWAL", idempotencyKey);
+    }
+    //adds amountCents to the balance inside the database and writes the ledger row in the same transaction
+    //a negative amount is a debit and only goes through if the account allows it and the balance covers it;
+    //a non-null idempotency key is inserted in the same transaction, so a used key makes the posting roll back
+    private PostingResult post(String accountNumber, long amountCents, String transactionType, String idempotencyKey) {
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                BalanceChange change = applyToBalance(conn, accountNumber, amountCents);
+                if (change == null) {
+                    conn.rollback();
+                    return explainRejectedPosting(conn, accountNumber);
+                }
+                
+                String description = amountCents >= 0 ? "Deposit to account" : "Withdrawal from " + change.accountType;
+                Transaction transaction = new Transaction(
+                    Account.generateTransactionId(),
+                    accountNumber,
+                    transactionType,
+                    Math.abs(amountCents),
+                    change.balanceAfterCents,
+                    description,
+                    LocalDateTime.now()
+                );
+                transactionDAO.insert(conn, transaction);
+                KeyRecord keyRecord = null;
+                if (idempotencyKey != null) {
+                    keyRecord = new KeyRecord(idempotencyKey, transactionType, accountNumber, null, Math.abs(amountCents),
+                        change.balanceAfterCents, 0, transaction.getTransactionId(), transaction.getTimestamp());
+                    idempotencyDAO.insert(conn, keyRecord);
+                }
+                conn.commit();
+                RecentTransactionCache.getInstance().add(transaction);
+                if (keyRecord != null) {
+                    idempotencyDAO.remember(keyRecord);
+                }
+                return new PostingResult(PostingStatus.POSTED, change.balanceAfterCents, transaction);
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                if (idempotencyKey != null && IdempotencyDAO.isDuplicateKey(e)) {
+                    return new PostingResult(PostingStatus.DUPLICATE, 0, null);
+                }
+                throw e;
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error posting " + transactionType.toLowerCase() + ": " + e.getMessage());
+            return new PostingResult(PostingStatus.FAILED, 0, null);
+        }
+    }
+    //moves amountCents from one account to another in one database transaction: both balances, a
+    //TRANSFER_OUT and a TRANSFER_IN ledger row, and a transfers row linking the two under one transfer id.
+    //The debit follows the same rules as a withdrawal. Rows are updated in account number order, so two
+    //transfers between the same accounts in opposite directions always lock them in the same order
+    public TransferPosting postTransfer(String fromAccount, String toAccount, long amountCents) {
+        return postTransfer(fromAccount, toAccount, amountCents, null);
+    }
+    //posts a transfer under an idempotency key; DUPLICATE means the key was used before and nothing was posted
+    public TransferPosting postTransfer(String fromAccount, String toAccount, long amountCents, String idempotencyKey) {
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                BalanceChange debit = null;
+                BalanceChange credit = null;
+                boolean debitFirst = fromAccount.compareTo(toAccount) < 0;
+                if (debitFirst) {
+                    debit = applyToBalance(conn, fromAccount, -amountCents);
+                }
+                if (debitFirst && debit == null) {
+                    conn.rollback();
+                    return new TransferPosting(explainRejectedPosting(conn, fromAccount).getStatus(), null, 0, 0, null, null);
+                }
+                credit = applyToBalance(conn, toAccount, amountCents);
+                if (credit == null) {
+                    conn.rollback();
+                    return new TransferPosting(PostingStatus.TO_ACCOUNT_NOT_FOUND, null, 0, 0, null, null);
+                }
+                if (!debitFirst) {
+                    debit = applyToBalance(conn, fromAccount, -amountCents);
+                    if (debit == null) {
+                        conn.rollback();
+                        return new TransferPosting(explainRejectedPosting(conn, fromAccount).getStatus(), null, 0, 0, null, null);
+                    }
+                }
+                
+                String transferId = TransactionIdGenerator.getInstance().nextTransferId();
+                LocalDateTime now = LocalDateTime.now();
+                Transaction debitLeg = new Transaction(Account.generateTransactionId(), fromAccount, "TRANSFER_OUT",
+                    amountCents, debit.balanceAfterCents, "Transfer to " + toAccount + " (" + transferId + ")", now);
+                Transaction creditLeg = new Transaction(Account.generateTransactionId(), toAccount, "TRANSFER_IN",
+                    amountCents, credit.balanceAfterCents, "Transfer from " + fromAccount + " (" + transferId + ")", now);
+                TransferPosting posting = new TransferPosting(PostingStatus.POSTED, transferId, debit.balanceAfterCents,
+                                                              credit.balanceAfterCents, debitLeg, creditLeg);
+                transactionDAO.insertBatch(conn, List.of(debitLeg, creditLeg));
+                insertTransfers(conn, List.of(posting));
+                KeyRecord keyRecord = null;
+                if (idempotencyKey != null) {
+                    keyRecord = new KeyRecord(idempotencyKey, "TRANSFER", fromAccount, toAccount, amountCents,
+                        debit.balanceAfterCents, credit.balanceAfterCents, transferId, now);
+                    idempotencyDAO.insert(conn, keyRecord);
+                }
+                conn.commit();
+                RecentTransactionCache.getInstance().addAll(List.of(debitLeg, creditLeg));
+                if (keyRecord != null) {
+                    idempotencyDAO.remember(keyRecord);
+                }
+                return posting;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                if (idempotencyKey != null && IdempotencyDAO.isDuplicateKey(e)) {
+                    return new TransferPosting(PostingStatus.DUPLICATE, null, 0, 0, null, null);
+                }
+                throw e;
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error posting transfer: " + e.getMessage());
+            return new TransferPosting(PostingStatus.FAILED, null, 0, 0, null, null);
+        }
+    }
+    //credits a batch of salaries in one database transaction and returns one result per credit, in the same
+    //order. The accounts are looked up in one query; a credit to a missing or non-cheque account is rejected
+    //without affecting the others. A credit whose idempotency key was used before is DUPLICATE and carries the
+    //ledger row it was posted as; new keys are inserted in the same transaction. If the transaction fails,
+    //every result is FAILED and nothing was written
+    public List<PostingResult> postSalaries(List<SalaryCredit> credits) {
+        String sql = "SELECT account_number, account_type, company_name FROM accounts WHERE account_number = ANY(?)";
+        List<PostingResult> results = new ArrayList<>(credits.size());
+        
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Map<String, String[]> accounts = new HashMap<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    Object[] accountNumbers = credits.stream().map(SalaryCredit::getAccountNumber).distinct().toArray();
+                    pstmt.setArray(1, conn.createArrayOf("VARCHAR", accountNumbers));
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        accounts.put(rs.getString(1), new String[] { rs.getString(2), rs.getString(3) });
+                    }
+                }
+                
+                List<String> keys = new ArrayList<>();
+                for (SalaryCredit credit : credits) {
+                    if (credit.getIdempotencyKey() != null) {
+                        keys.add(credit.getIdempotencyKey());
+                    }
+                }
+                Map<String, KeyRecord> usedKeys = keys.isEmpty() ? Map.of() : idempotencyDAO.findAll(conn, keys);
+                
+                List<Transaction> transactions = new ArrayList<>(credits.size());
+                List<KeyRecord> keyRecords = new ArrayList<>(keys.size());
+                LocalDateTime now = LocalDateTime.now();
+                for (SalaryCredit credit : credits) {
+                    KeyRecord used = credit.getIdempotencyKey() == null ? null : usedKeys.get(credit.getIdempotencyKey());
+                    if (used != null) {
+                        results.add(repeatedSalary(used, credit));
+                        continue;
+                    }
+                    String[] account = accounts.get(credit.getAccountNumber());
+                    if (account != null && !"Cheque Account".equals(account[0])) {
+                        results.add(new PostingResult(PostingStatus.NOT_PERMITTED, 0, null));
+                        continue;
+                    }
+                    BalanceChange change = account == null ? null
+                        : applyToBalance(conn, credit.getAccountNumber(), credit.getAmountCents());
+                    if (change == null) {
+                        results.add(new PostingResult(PostingStatus.ACCOUNT_NOT_FOUND, 0, null));
+                        continue;
+                    }
+                    String description = ChequeAccount.salaryDescription(account[1], credit.getReference());
+                    Transaction transaction = new Transaction(
+                        Account.generateTransactionId(),
+                        credit.getAccountNumber(),
+                        "SALARY",
+                        credit.getAmountCents(),
+                        change.balanceAfterCents,
+                        description.length() > MAX_DESCRIPTION_LENGTH
+                            ? description.substring(0, MAX_DESCRIPTION_LENGTH) : description,
+                        now
+                    );
+                    transactions.add(transaction);
+                    results.add(new PostingResult(PostingStatus.POSTED, change.balanceAfterCents, transaction));
+                    if (credit.getIdempotencyKey() != null) {
+                        keyRecords.add(new KeyRecord(credit.getIdempotencyKey(), "SALARY", credit.getAccountNumber(),
+                            null, credit.getAmountCents(), change.balanceAfterCents, 0, transaction.getTransactionId(),
+                            now));
+                    }
+                }
+                transactionDAO.insertBatch(conn, transactions);
+                if (!keyRecords.isEmpty()) {
+                    idempotencyDAO.insertBatch(conn, keyRecords);
+                }
+                conn.commit();
+                RecentTransactionCache.getInstance().addAll(transactions);
+                for (KeyRecord keyRecord : keyRecords) {
+                    idempotencyDAO.remember(keyRecord);
+                }
+                return results;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error posting salary batch: " + e.getMessage());
+            results.clear();
+            for (int i = 0; i < credits.size(); i++) {
+                results.add(new PostingResult(PostingStatus.FAILED, 0, null));
+            }
+            return results;
+        }
+    }
+    //the result of a salary credit that was posted before under the same key: the ledger row it was posted as,
+    //rebuilt from the key, or no row at all if the key was used for something else
+    private PostingResult repeatedSalary(KeyRecord used, SalaryCredit credit) {
+        if (!used.matches("SALARY", credit.getAccountNumber(), null, credit.getAmountCents())) {
+            return new PostingResult(PostingStatus.DUPLICATE, 0, null);
+        }
+        Transaction original = new Transaction(used.getReference(), used.getAccountNumber(), "SALARY",
+            used.getAmountCents(), used.getBalanceCents(), null, used.getCreatedOn());
+        return new PostingResult(PostingStatus.DUPLICATE, used.getBalanceCents(), original);
+    }
+    //writes postings that the ledger engine has already applied in memory: each account's balance moves by the
+    //sum of its postings in the batch, and their ledger rows, transfers rows and idempotency keys are inserted,
+    //in one transaction. Balances are moved rather than set, so a posting written late, after a retry, still
+    //leaves the right balance. Returns the postings that could not be written; if the batch fails, each posting
+    //is tried on its own so that one bad row does not hold back the others
+    public List<ProjectedPosting> projectPostings(List<ProjectedPosting> postings) {
+        SQLException error;
+        try {
+            writeProjection(postings);
+            return List.of();
+        } catch (SQLException e) {
+            error = e;
+        }
+        List<ProjectedPosting> failed = new ArrayList<>();
+        if (postings.size() == 1) {
+            failed.addAll(postings);
+        } else {
+            for (ProjectedPosting posting : postings) {
+                try {
+                    writeProjection(List.of(posting));
+                } catch (SQLException e) {
+                    failed.add(posting);
+                    error = e;
+                }
+            }
+        }
+        if (!failed.isEmpty()) {
+            System.err.println("Error projecting " + failed.size() + " of " + postings.size() + 
+                               " postings, kept for another try: " + error.getMessage());
+        }
+        return failed;
+    }
+
+    private void writeProjection(List<ProjectedPosting> postings) throws SQLException {
+        String sql = "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_number = ?";
+        Map<String, Long> changes = new LinkedHashMap<>();
+        List<Transaction> transactions = new ArrayList<>(postings.size());
+        List<TransferPosting> transfers = new ArrayList<>();
+        List<KeyRecord> keyRecords = new ArrayList<>();
+        for (ProjectedPosting posting : postings) {
+            changes.merge(posting.getTransaction().getAccountNumber(), posting.getAmountCents(), Money::add);
+            transactions.add(posting.getTransaction());
+            if (posting.getTransfer() != null) {
+                transfers.add(posting.getTransfer());
+            }
+            if (posting.getKeyRecord() != null) {
+                keyRecords.add(posting.getKeyRecord());
+            }
+        }
+        
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<String> accountNumbers = new ArrayList<>(changes.keySet());
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (String accountNumber : accountNumbers) {
+                        pstmt.setBigDecimal(1, Money.toDecimal(changes.get(accountNumber)));
+                        pstmt.setString(2, accountNumber);
+                        pstmt.addBatch();
+                    }
+                    int[] updated = pstmt.executeBatch();
+                    for (int i = 0; i < updated.length; i++) {
+                        if (updated[i] == 0) {
+                            throw new SQLException("Account not found: " + accountNumbers.get(i));
+                        }
+                    }
+                }
+                transactionDAO.insertBatch(conn, transactions);
+                if (!transfers.isEmpty()) {
+                    insertTransfers(conn, transfers);
+                }
+                if (!keyRecords.isEmpty()) {
+                    idempotencyDAO.insertBatch(conn, keyRecords);
+                }
+                conn.commit();
+                RecentTransactionCache.getInstance().addAll(transactions);
+                for (KeyRecord keyRecord : keyRecords) {
+                    idempotencyDAO.remember(keyRecord);
+                }
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    //writes the transfers rows that link each transfer's two ledger rows, on the caller's connection
+    private void insertTransfers(Connection conn, List<TransferPosting> transfers) throws SQLException {
+        String sql = "INSERT INTO transfers (transfer_id, from_account, to_account, amount, " +
+                     "debit_transaction_id, credit_transaction_id, transfer_timestamp) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (TransferPosting transfer : transfers) {
+                pstmt.setString(1, transfer.getTransferId());
+                pstmt.setString(2, transfer.getDebit().getAccountNumber());
+                pstmt.setString(3, transfer.getCredit().getAccountNumber());
+                pstmt.setBigDecimal(4, Money.toDecimal(transfer.getDebit().getAmountCents()));
+                pstmt.setString(5, transfer.getDebit().getTransactionId());
+                pstmt.setString(6, transfer.getCredit().getTransactionId());
+                pstmt.setTimestamp(7, Timestamp.valueOf(transfer.getDebit().getTimestamp()));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+    //adds amountCents to one balance on the caller's connection and returns the new balance, or null if the
+    //account does not exist or, for a debit, is a savings account or would go below zero
+    private BalanceChange applyToBalance(Connection conn, String accountNumber, long amountCents) throws SQLException {
+        String sql = "SELECT balance, account_type FROM FINAL TABLE (" +
+                     "UPDATE accounts SET balance = balance + ?, version = version + 1 " +
+                     "WHERE account_number = ? " +
+                     "AND (? >= 0 OR (account_type <> 'Savings Account' AND balance + ? >= 0)))";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            BigDecimal amount = Money.toDecimal(amountCents);
+            pstmt.setBigDecimal(1, amount);
+            pstmt.setString(2, accountNumber);
+            pstmt.setBigDecimal(3, amount);
+            pstmt.setBigDecimal(4, amount);
+            ResultSet rs = pstmt.executeQuery();
+            
+            if (!rs.next()) {
+                return null;
+            }
+            return new BalanceChange(Money.fromDecimal(rs.getBigDecimal(1)), rs.getString(2));
+        }
+    }
+    //only runs when a posting was rejected, to tell the caller why
+    private PostingResult explainRejectedPosting(Connection conn, String accountNumber) throws SQLException {
+        String sql = "SELECT account_type, balance FROM accounts WHERE account_number = ?";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, accountNumber);
+            ResultSet rs = pstmt.executeQuery();
+            
+            if (!rs.next()) {
+                return new PostingResult(PostingStatus.ACCOUNT_NOT_FOUND, 0, null);
+            }
+            PostingStatus status = "Savings Account".equals(rs.getString(1))
+                ? PostingStatus.NOT_PERMITTED : PostingStatus.INSUFFICIENT_FUNDS;
+            return new PostingResult(status, Money.fromDecimal(rs.getBigDecimal(2)), null);
+        }
+    }
   //removes an account from databse
     public boolean delete(String accountNumber) {
         String sql = "DELETE FROM accounts WHERE account_number = ?";
@@ -129,14 +547,15 @@ public class AccountDAO {
     //chcks all accounts from databse
     public List<Account> findAll() {
         List<Account> accounts = new ArrayList<>();
-        String sql = "SELECT * FROM accounts ORDER BY account_number";
+        String sql = SELECT_WITH_CUSTOMER + "ORDER BY a.account_number";
         
         try (Connection conn = dbManager.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
+            Map<String, Customer> customers = new HashMap<>();
             while (rs.next()) {
-                Account account = createAccountFromResultSet(rs);
+                Account account = createAccountFromResultSet(rs, customers);
                 if (account != null) {
                     accounts.add(account);
                 }
@@ -148,19 +567,56 @@ public class AccountDAO {
         
         return accounts;
     }
+    //streams every account to the action one row at a time instead of building a list
+    public int forEachAccount(Consumer<Account> action) {
+        return forEachAccount(DEFAULT_FETCH_SIZE, action);
+    }
+    //streams every account with the given fetch size and returns how many were passed to the action
+    public int forEachAccount(int fetchSize, Consumer<Account> action) {
+        String sql = SELECT_WITH_CUSTOMER + "ORDER BY a.account_number";
+        int count = 0;
+        
+        try (Connection conn = dbManager.getConnection()) {
+            dbManager.setLazyQueryExecution(conn, true);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(fetchSize);
+                ResultSet rs = pstmt.executeQuery();
+                
+                Map<String, Customer> customers = new HashMap<>();
+                while (rs.next()) {
+                    if (customers.size() >= STREAM_CUSTOMER_CACHE_SIZE) {
+                        customers.clear();
+                    }
+                    Account account = createAccountFromResultSet(rs, customers);
+                    if (account != null) {
+                        action.accept(account);
+                        count++;
+                    }
+                }
+            } finally {
+                dbManager.setLazyQueryExecution(conn, false);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error streaming accounts: " + e.getMessage());
+        }
+        
+        return count;
+    }
     
-    //Converts a database row into the right type of Account object
-    private Account createAccountFromResultSet(ResultSet rs) throws SQLException {
+    //Converts a joined account/customer row into the right type of Account object
+    //customers already built during the same query are reused so each one is created only once
+    private Account createAccountFromResultSet(ResultSet rs, Map<String, Customer> customers) throws SQLException {
         String accountNumber = rs.getString("account_number");
         String customerId = rs.getString("customer_id");
         String accountType = rs.getString("account_type");
-        double balance = rs.getDouble("balance");
+        long balance = Money.fromDecimal(rs.getBigDecimal("balance"));
         String branch = rs.getString("branch");
         
-        Customer customer = customerDAO.findById(customerId);
+        Customer customer = customers.get(customerId);
         if (customer == null) {
-            System.err.println("Customer not found for account: " + accountNumber);
-            return null;
+            customer = CustomerDAO.createCustomerFromResultSet(rs);
+            customers.put(customerId, customer);
         }
         
             Account account = null;
@@ -186,8 +642,112 @@ public class AccountDAO {
                 return null;
         }
         
+        account.setVersion(rs.getLong("version"));
         return account;
     }
+    public enum PostingStatus {
+        POSTED, ACCOUNT_NOT_FOUND, TO_ACCOUNT_NOT_FOUND, NOT_PERMITTED, INSUFFICIENT_FUNDS, DUPLICATE, FAILED
+    }
+    //outcome of a posting: the new balance and ledger row, or why it was rejected
+    public static class PostingResult {
+        private final PostingStatus status;
+        private final long balanceCents;
+        private final Transaction transaction;
+        
+        public PostingResult(PostingStatus status, long balanceCents, Transaction transaction) {
+            this.status = status;
+            this.balanceCents = balanceCents;
+            this.transaction = transaction;
+        }
+        
+        public boolean isPosted() { return status == PostingStatus.POSTED; }
+        public PostingStatus getStatus() { return status; }
+        public long getBalanceCents() { return balanceCents; }
+        public double getBalance() { return Money.toAmount(balanceCents); }
+        public Transaction getTransaction() { return transaction; }
+    }
+    //outcome of a transfer: the transfer id, both new balances and both ledger rows, or why it was rejected
+    public static class TransferPosting {
+        private final PostingStatus status;
+        private final String transferId;
+        private final long fromBalanceCents;
+        private final long toBalanceCents;
+        private final Transaction debit;
+        private final Transaction credit;
+        
+        public TransferPosting(PostingStatus status, String transferId, long fromBalanceCents, long toBalanceCents,
+                               Transaction debit, Transaction credit) {
+            this.status = status;
+            this.transferId = transferId;
+            this.fromBalanceCents = fromBalanceCents;
+            this.toBalanceCents = toBalanceCents;
+            this.debit = debit;
+            this.credit = credit;
+        }
+        
+        public boolean isPosted() { return status == PostingStatus.POSTED; }
+        public PostingStatus getStatus() { return status; }
+        public String getTransferId() { return transferId; }
+        public long getFromBalanceCents() { return fromBalanceCents; }
+        public long getToBalanceCents() { return toBalanceCents; }
+        public Transaction getDebit() { return debit; }
+        public Transaction getCredit() { return credit; }
+    }
+    //one line of a salary run: the amount to credit, the employer's reference for it and, optionally, the
+    //idempotency key that makes it post only once
+    public static class SalaryCredit {
+        private final String accountNumber;
+        private final long amountCents;
+        private final String reference;
+        private final String idempotencyKey;
+        
+        public SalaryCredit(String accountNumber, long amountCents, String reference) {
+            this(accountNumber, amountCents, reference, null);
+        }
+        
+        public SalaryCredit(String accountNumber, long amountCents, String reference, String idempotencyKey) {
+            this.accountNumber = accountNumber;
+            this.amountCents = amountCents;
+            this.reference = reference;
+            this.idempotencyKey = idempotencyKey;
+        }
+        
+        public String getAccountNumber() { return accountNumber; }
+        public long getAmountCents() { return amountCents; }
+        public String getReference() { return reference; }
+        public String getIdempotencyKey() { return idempotencyKey; }
+    }
+    //a posting the ledger engine has applied in memory and still has to write: the ledger row, the signed
+    //amount it moved the balance by and, when it completes a transfer or a keyed request, the transfers row
+    //or the idempotency key written with it
+    public static class ProjectedPosting {
+        private final Transaction transaction;
+        private final long amountCents;
+        private final TransferPosting transfer;
+        private final KeyRecord keyRecord;
+        
+        public ProjectedPosting(Transaction transaction, long amountCents, TransferPosting transfer, KeyRecord keyRecord) {
+            this.transaction = transaction;
+            this.amountCents = amountCents;
+            this.transfer = transfer;
+            this.keyRecord = keyRecord;
+        }
+        
+        public Transaction getTransaction() { return transaction; }
+        public long getAmountCents() { return amountCents; }
+        public TransferPosting getTransfer() { return transfer; }
+        public KeyRecord getKeyRecord() { return keyRecord; }
+    }
+    //a balance just updated by applyToBalance
+    private static class BalanceChange {
+        private final long balanceAfterCents;
+        private final String accountType;
+        
+        BalanceChange(long balanceAfterCents, String accountType) {
+            this.balanceAfterCents = balanceAfterCents;
+            this.accountType = accountType;
+        }
+    }
     //brings true if an account with the given number exists
     public boolean exists(String accountNumber) {
         String sql = "SELECT COUNT(*) FROM accounts WHERE account_number = ?";
@@ -208,6 +768,53 @@ public class AccountDAO {
         
         return false;
     }
+    //returns the last account number of the next chunk after the given one, or null when there are no more accounts;
+    //batch jobs (interest, summary rebuilds) work through accounts as plain primary key ranges of any account type
+    public String findChunkEnd(String afterAccountNumber, int chunkSize) {
+        String sql = "SELECT MAX(account_number) FROM (" +
+                     "SELECT account_number FROM accounts WHERE account_number > ? " +
+                     "ORDER BY account_number LIMIT ?)";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, afterAccountNumber);
+            pstmt.setInt(2, chunkSize);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getString(1);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error finding account chunk: " + e.getMessage());
+        }
+
+        return null;
+    }
+    //the account numbers in (afterAccountNumber, upToAccountNumber], in order; one chunk from findChunkEnd
+    public List<String> findAccountNumbers(String afterAccountNumber, String upToAccountNumber) {
+        List<String> accountNumbers = new ArrayList<>();
+        String sql = "SELECT account_number FROM accounts WHERE account_number > ? AND account_number <= ? " +
+                     "ORDER BY account_number";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, afterAccountNumber);
+            pstmt.setString(2, upToAccountNumber);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                accountNumbers.add(rs.getString(1));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error finding account numbers: " + e.getMessage());
+        }
+
+        return accountNumbers;
+    }
     //counts how many accounts of a certain type exists in the databse
     public int countByType(String accountType) {
         String sql = "SELECT COUNT(*) FROM accounts WHERE account_type = ?";
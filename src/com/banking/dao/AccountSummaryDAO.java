@@ -0,0 +1,247 @@
+package com.banking.dao;
+
+import com.banking.database.DatabaseManager;
+import com.banking.model.Money;
+import com.banking.model.Transaction;
+
+import java.io.IOException;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//running totals per account and transaction type (amount, count, last posting), kept in account_summary
+//by whoever writes the ledger row, in the same database transaction, so totals never need a scan
+public class AccountSummaryDAO {
+    //adds count postings totalling amount to one account and type, creating the row on its first posting
+    private static final String RECORD_SQL =
+        "MERGE INTO account_summary s USING (VALUES (CAST(? AS VARCHAR(50)), CAST(? AS VARCHAR(20)), " +
+        "CAST(? AS DECIMAL(15, 2)), CAST(? AS BIGINT), CAST(? AS TIMESTAMP))) " +
+        "v(account_number, transaction_type, amount, cnt, posted) " +
+        "ON s.account_number = v.account_number AND s.transaction_type = v.transaction_type " +
+        "WHEN MATCHED THEN UPDATE SET total_amount = s.total_amount + v.amount, " +
+        "transaction_count = s.transaction_count + v.cnt, last_posting = GREATEST(s.last_posting, v.posted) " +
+        "WHEN NOT MATCHED THEN INSERT (account_number, transaction_type, total_amount, transaction_count, " +
+        "last_posting) VALUES (v.account_number, v.transaction_type, v.amount, v.cnt, v.posted)";
+
+    private DatabaseManager dbManager;
+    private TransactionPartitionDAO partitionDAO;
+
+    public AccountSummaryDAO() {
+        //sets up connection to the databse
+        this.dbManager = DatabaseManager.getInstance();
+        this.partitionDAO = new TransactionPartitionDAO();
+    }
+    //adds one ledger row to its summary on the caller's connection, inside the caller's transaction
+    void record(Connection conn, Transaction transaction) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(RECORD_SQL)) {
+            setSummary(pstmt, transaction.getAccountNumber(), transaction.getTransactionType(),
+                       transaction.getAmountCents(), 1, transaction.getTimestamp());
+            pstmt.executeUpdate();
+        }
+    }
+    //adds a batch of ledger rows, merging rows of the same account and type first so each summary row
+    //is updated once per batch
+    void recordAll(Connection conn, List<Transaction> transactions) throws SQLException {
+        Map<String, Totals> totals = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            totals.computeIfAbsent(transaction.getAccountNumber() + '\n' + transaction.getTransactionType(),
+                                   key -> new Totals(transaction)).add(transaction);
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(RECORD_SQL)) {
+            for (Totals t : totals.values()) {
+                setSummary(pstmt, t.accountNumber, t.transactionType, t.amountCents, t.count, t.lastPosting);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+    //total amount in cents posted to an account with the given transaction type
+    public long getTotalCents(String accountNumber, String transactionType) {
+        String sql = "SELECT total_amount FROM account_summary WHERE account_number = ? AND transaction_type = ?";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, accountNumber);
+            pstmt.setString(2, transactionType);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return Money.fromDecimal(rs.getBigDecimal(1));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error reading account summary: " + e.getMessage());
+        }
+
+        return 0;
+    }
+    //number of transactions of every type for an account; reads one summary row per type
+    public int getTransactionCount(String accountNumber) {
+        String sql = "SELECT COALESCE(SUM(transaction_count), 0) FROM account_summary WHERE account_number = ?";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, accountNumber);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error reading account summary: " + e.getMessage());
+        }
+
+        return 0;
+    }
+    //time of the account's latest transaction, or null if it has none
+    public LocalDateTime getLastPostingTime(String accountNumber) {
+        String sql = "SELECT MAX(last_posting) FROM account_summary WHERE account_number = ?";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, accountNumber);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next() && rs.getTimestamp(1) != null) {
+                return rs.getTimestamp(1).toLocalDateTime();
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error reading account summary: " + e.getMessage());
+        }
+
+        return null;
+    }
+    //recomputes the summaries of the accounts in (afterAccountNumber, upToAccountNumber] from the ledger in one
+    //database transaction and returns the number of summary rows written; the accounts are locked first so
+    //postings to them wait for the rebuild instead of being counted twice or missed. Archived months add the
+    //totals stored in their segments, so they are never decompressed
+    public int rebuildChunk(String afterAccountNumber, String upToAccountNumber) throws SQLException {
+        String range = "account_number > ? AND account_number <= ?";
+        String lockSql = "SELECT account_number FROM accounts WHERE " + range + " FOR UPDATE";
+        String deleteSql = "DELETE FROM account_summary WHERE " + range;
+        String insertSql = "INSERT INTO account_summary (account_number, transaction_type, total_amount, " +
+                           "transaction_count, last_posting) " +
+                           "SELECT account_number, transaction_type, SUM(amount), COUNT(*), MAX(transaction_timestamp) " +
+                           "FROM transactions WHERE " + range + " GROUP BY account_number, transaction_type";
+
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Set<String> accounts = new HashSet<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(lockSql)) {
+                    setRange(pstmt, afterAccountNumber, upToAccountNumber);
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        accounts.add(rs.getString(1));
+                    }
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(deleteSql)) {
+                    setRange(pstmt, afterAccountNumber, upToAccountNumber);
+                    pstmt.executeUpdate();
+                }
+
+                int rows;
+                try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+                    setRange(pstmt, afterAccountNumber, upToAccountNumber);
+                    rows = pstmt.executeUpdate();
+                }
+                rows += recordArchived(conn, accounts, afterAccountNumber, upToAccountNumber);
+
+                conn.commit();
+                return rows;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    //adds the archived segments' totals for the given accounts, skipping rows of accounts that no longer exist;
+    //returns the number of totals merged
+    private int recordArchived(Connection conn, Set<String> accounts, String afterAccountNumber,
+                               String upToAccountNumber) throws SQLException {
+        int merged = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(RECORD_SQL)) {
+            for (TransactionPartitionDAO.Partition partition : partitionDAO.findAll()) {
+                if (!partition.isArchived()) {
+                    continue;
+                }
+                List<ArchiveSegment.Totals> totals;
+                try {
+                    totals = partition.segment().totalsBetween(afterAccountNumber, upToAccountNumber);
+                } catch (IOException e) {
+                    throw new SQLException("Cannot read archive " + partition.getArchivedTo() + ": " + e.getMessage(), e);
+                }
+                for (ArchiveSegment.Totals t : totals) {
+                    if (accounts.contains(t.getAccountNumber())) {
+                        pstmt.setString(1, t.getAccountNumber());
+                        pstmt.setString(2, t.getTransactionType());
+                        pstmt.setBigDecimal(3, Money.toDecimal(t.getAmountCents()));
+                        pstmt.setLong(4, t.getCount());
+                        pstmt.setTimestamp(5, Timestamp.valueOf(t.getLastPosting()));
+                        pstmt.addBatch();
+                        merged++;
+                    }
+                }
+            }
+            pstmt.executeBatch();
+        }
+        return merged;
+    }
+    //removes an account's summaries on the caller's connection, alongside deleting its ledger rows
+    void deleteByAccountNumber(Connection conn, String accountNumber) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM account_summary WHERE account_number = ?")) {
+            pstmt.setString(1, accountNumber);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void setRange(PreparedStatement pstmt, String afterAccountNumber,
+                          String upToAccountNumber) throws SQLException {
+        pstmt.setString(1, afterAccountNumber);
+        pstmt.setString(2, upToAccountNumber);
+    }
+
+    private void setSummary(PreparedStatement pstmt, String accountNumber, String transactionType, long amountCents,
+                            long count, LocalDateTime lastPosting) throws SQLException {
+        pstmt.setString(1, accountNumber);
+        pstmt.setString(2, transactionType);
+        pstmt.setBigDecimal(3, Money.toDecimal(amountCents));
+        pstmt.setLong(4, count);
+        pstmt.setTimestamp(5, Timestamp.valueOf(lastPosting));
+    }
+
+    //what one batch adds to one account and type
+    private static class Totals {
+        private final String accountNumber;
+        private final String transactionType;
+        private long amountCents;
+        private long count;
+        private LocalDateTime lastPosting;
+
+        Totals(Transaction first) {
+            this.accountNumber = first.getAccountNumber();
+            this.transactionType = first.getTransactionType();
+            this.lastPosting = first.getTimestamp();
+        }
+
+        void add(Transaction transaction) {
+            amountCents = Money.add(amountCents, transaction.getAmountCents());
+            count++;
+            if (transaction.getTimestamp().isAfter(lastPosting)) {
+                lastPosting = transaction.getTimestamp();
+            }
+        }
+    }
+}
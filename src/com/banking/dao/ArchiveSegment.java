@@ -0,0 +1,489 @@
+package com.banking.dao;
+
+import com.banking.model.Money;
+import com.banking.model.Transaction;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+//one archived partition in a write-once, compressed, column-oriented file that is read through a memory map.
+//Rows are sorted by account and then newest first, so an account's history is one run of rows. The file holds
+//row groups of ROW_GROUP_SIZE rows, each column stored one after the other and the group deflated as a whole,
+//then a directory (account, type and description dictionaries, each account's row range, per account and type
+//totals, row group offsets), then the directory's offset and MAGIC.
+class ArchiveSegment {
+    static final int ROW_GROUP_SIZE = 4096;
+    private static final long MAGIC = 0x42414E4B53454731L;
+    private static final int FOOTER_BYTES = 16;
+
+    //segments are immutable, so each file is mapped once per process
+    private static final Map<Path, ArchiveSegment> openSegments = new ConcurrentHashMap<>();
+
+    private final MappedByteBuffer buffer;
+    private final int rowCount;
+    private final String[] accounts;
+    private final int[] accountFirstRow;
+    private final int[] accountRowCount;
+    private final String[] types;
+    private final String[] descriptions;
+    private final List<Totals> totals = new ArrayList<>();
+    private final int[] groupFirstRow;
+    private final int[] groupRows;
+    private final long[] groupOffset;
+    private final int[] groupCompressedLength;
+    private final int[] groupRawLength;
+
+    private ArchiveSegment(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int size = buffer.capacity();
+        if (size < FOOTER_BYTES || buffer.getLong(size - 8) != MAGIC) {
+            throw new IOException("Not an archive segment: " + file);
+        }
+
+        ByteBuffer directory = buffer.duplicate();
+        directory.position((int) buffer.getLong(size - FOOTER_BYTES));
+        rowCount = directory.getInt();
+
+        int accountCount = directory.getInt();
+        accounts = new String[accountCount];
+        accountFirstRow = new int[accountCount];
+        accountRowCount = new int[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = readString(directory);
+            accountFirstRow[i] = directory.getInt();
+            accountRowCount[i] = directory.getInt();
+        }
+        types = readStrings(directory);
+        descriptions = readStrings(directory);
+
+        int totalsCount = directory.getInt();
+        for (int i = 0; i < totalsCount; i++) {
+            totals.add(new Totals(accounts[directory.getInt()], types[directory.getInt()],
+                                  directory.getLong(), directory.getLong(), fromMicros(directory.getLong())));
+        }
+
+        int groupCount = directory.getInt();
+        groupFirstRow = new int[groupCount];
+        groupRows = new int[groupCount];
+        groupOffset = new long[groupCount];
+        groupCompressedLength = new int[groupCount];
+        groupRawLength = new int[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            groupFirstRow[i] = directory.getInt();
+            groupRows[i] = directory.getInt();
+            groupOffset[i] = directory.getLong();
+            groupCompressedLength[i] = directory.getInt();
+            groupRawLength[i] = directory.getInt();
+        }
+    }
+    //returns the segment stored in the file, mapping it on first use
+    static ArchiveSegment open(Path file) throws IOException {
+        try {
+            return openSegments.computeIfAbsent(file.toAbsolutePath(), path -> {
+                try {
+                    return new ArchiveSegment(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    //forgets a mapped segment, e.g. before its file is deleted
+    static void close(Path file) {
+        openSegments.remove(file.toAbsolutePath());
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+    //passes the account's transactions, newest first, to action until it returns false
+    void scanAccount(String accountNumber, Predicate<Transaction> action) throws IOException {
+        scanAccount(accountNumber, false, action);
+    }
+    //passes the account's transactions to action, oldest first if asked, until it returns false
+    void scanAccount(String accountNumber, boolean oldestFirst, Predicate<Transaction> action) throws IOException {
+        int account = Arrays.binarySearch(accounts, accountNumber);
+        if (account >= 0) {
+            scanRows(accountFirstRow[account], accountFirstRow[account] + accountRowCount[account], oldestFirst, action);
+        }
+    }
+    //passes every transaction in the segment to action until it returns false
+    void scanAll(Predicate<Transaction> action) throws IOException {
+        scanRows(0, rowCount, false, action);
+    }
+    //totals per account and type for the accounts in (afterAccountNumber, upToAccountNumber]
+    List<Totals> totalsBetween(String afterAccountNumber, String upToAccountNumber) {
+        List<Totals> inRange = new ArrayList<>();
+        for (Totals t : totals) {
+            if (t.accountNumber.compareTo(afterAccountNumber) > 0 && t.accountNumber.compareTo(upToAccountNumber) <= 0) {
+                inRange.add(t);
+            }
+        }
+        return inRange;
+    }
+
+    //visits rows [fromRow, toRow) in file order, or backwards when reversed, decoding only the groups they are in
+    private void scanRows(int fromRow, int toRow, boolean reversed, Predicate<Transaction> action) throws IOException {
+        for (int i = 0; i < groupFirstRow.length; i++) {
+            int group = reversed ? groupFirstRow.length - 1 - i : i;
+            int first = groupFirstRow[group];
+            if (first >= toRow || first + groupRows[group] <= fromRow) {
+                continue;
+            }
+            RowGroup rows = readGroup(group);
+            int start = Math.max(fromRow, first);
+            int end = Math.min(toRow, first + groupRows[group]);
+            for (int j = 0; j < end - start; j++) {
+                int row = reversed ? end - 1 - j : start + j;
+                if (!action.test(rows.transaction(row - first))) {
+                    return;
+                }
+            }
+        }
+    }
+    //inflates one row group straight from the mapped file and decodes its columns
+    private RowGroup readGroup(int group) throws IOException {
+        ByteBuffer compressed = buffer.duplicate();
+        compressed.position((int) groupOffset[group]).limit((int) groupOffset[group] + groupCompressedLength[group]);
+        byte[] raw = new byte[groupRawLength[group]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                //a truncated group runs out of input before it is finished, and inflate then keeps returning 0
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated archive row group " + group);
+                }
+                length += inflated;
+            }
+            if (length < raw.length) {
+                throw new IOException("Short archive row group " + group + ": " + length + " of " + raw.length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive row group " + group, e);
+        } finally {
+            inflater.end();
+        }
+        return new RowGroup(ByteBuffer.wrap(raw), groupRows[group]);
+    }
+
+    //the decoded columns of one row group
+    private class RowGroup {
+        private final int[] account;
+        private final int[] type;
+        private final String[] id;
+        private final long[] micros;
+        private final long[] amountCents;
+        private final long[] balanceCents;
+        private final int[] description;
+
+        RowGroup(ByteBuffer in, int rows) {
+            account = new int[rows];
+            type = new int[rows];
+            id = new String[rows];
+            micros = new long[rows];
+            amountCents = new long[rows];
+            balanceCents = new long[rows];
+            description = new int[rows];
+            for (int i = 0; i < rows; i++) account[i] = (int) readVarLong(in);
+            for (int i = 0; i < rows; i++) type[i] = (int) readVarLong(in);
+            for (int i = 0; i < rows; i++) id[i] = readVarString(in);
+            long previous = 0;
+            for (int i = 0; i < rows; i++) micros[i] = previous += zigZagDecode(readVarLong(in));
+            for (int i = 0; i < rows; i++) amountCents[i] = zigZagDecode(readVarLong(in));
+            for (int i = 0; i < rows; i++) balanceCents[i] = zigZagDecode(readVarLong(in));
+            for (int i = 0; i < rows; i++) description[i] = (int) readVarLong(in);
+        }
+
+        Transaction transaction(int row) {
+            return new Transaction(id[row], accounts[account[row]], types[type[row]], amountCents[row],
+                                   balanceCents[row],
+                                   description[row] == 0 ? null : descriptions[description[row] - 1],
+                                   fromMicros(micros[row]));
+        }
+    }
+
+    //writes the rows of rs, which must be ordered by account_number, transaction_timestamp DESC, transaction_id DESC,
+    //to a new segment file and returns the number of rows; the file only appears once it is complete
+    static int write(ResultSet rs, Path file) throws SQLException, IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        Writer writer = new Writer();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partial)))) {
+            while (rs.next()) {
+                writer.add(out, rs);
+            }
+            writer.finish(out);
+        } catch (SQLException | IOException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return writer.rowCount;
+    }
+
+    //builds the dictionaries and totals while rows stream in and writes a row group whenever one is full
+    private static class Writer {
+        private final List<String> accounts = new ArrayList<>();
+        private final List<Integer> accountFirstRow = new ArrayList<>();
+        private final Map<String, Integer> types = new HashMap<>();
+        private final Map<String, Integer> descriptions = new HashMap<>();
+        private final List<long[]> totals = new ArrayList<>();
+        private final Map<Integer, long[]> accountTotals = new HashMap<>();
+        private final List<long[]> groups = new ArrayList<>();
+        private final ColumnBuffer[] columns = new ColumnBuffer[7];
+        private int groupFirstRow;
+        private int groupRows;
+        private long previousMicros;
+        private int rowCount;
+
+        Writer() {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new ColumnBuffer();
+            }
+        }
+
+        void add(DataOutputStream out, ResultSet rs) throws SQLException, IOException {
+            String accountNumber = rs.getString("account_number");
+            if (accounts.isEmpty() || !accounts.get(accounts.size() - 1).equals(accountNumber)) {
+                if (!accounts.isEmpty() && accounts.get(accounts.size() - 1).compareTo(accountNumber) > 0) {
+                    throw new IOException("Archive rows must be sorted by account number, " + accountNumber +
+                                          " came after " + accounts.get(accounts.size() - 1));
+                }
+                flushAccountTotals();
+                accounts.add(accountNumber);
+                accountFirstRow.add(rowCount);
+            }
+            int account = accounts.size() - 1;
+            int type = types.computeIfAbsent(rs.getString("transaction_type"), key -> types.size());
+            String descriptionText = rs.getString("description");
+            int description = descriptionText == null ? 0
+                : descriptions.computeIfAbsent(descriptionText, key -> descriptions.size()) + 1;
+            long micros = toMicros(rs.getTimestamp("transaction_timestamp").toLocalDateTime());
+            long amountCents = Money.fromDecimal(rs.getBigDecimal("amount"));
+            long balanceCents = Money.fromDecimal(rs.getBigDecimal("balance_after"));
+
+            columns[0].writeVarLong(account);
+            columns[1].writeVarLong(type);
+            columns[2].writeString(rs.getString("transaction_id"));
+            columns[3].writeVarLong(zigZagEncode(micros - previousMicros));
+            columns[4].writeVarLong(zigZagEncode(amountCents));
+            columns[5].writeVarLong(zigZagEncode(balanceCents));
+            columns[6].writeVarLong(description);
+            previousMicros = micros;
+
+            long[] t = accountTotals.computeIfAbsent(type, key -> new long[] { account, type, 0, 0, Long.MIN_VALUE });
+            t[2]++;
+            t[3] += amountCents;
+            t[4] = Math.max(t[4], micros);
+
+            rowCount++;
+            if (++groupRows == ROW_GROUP_SIZE) {
+                writeGroup(out);
+            }
+        }
+
+        void finish(DataOutputStream out) throws IOException {
+            if (groupRows > 0) {
+                writeGroup(out);
+            }
+            flushAccountTotals();
+
+            long directoryOffset = out.size();
+            out.writeInt(rowCount);
+            out.writeInt(accounts.size());
+            for (int i = 0; i < accounts.size(); i++) {
+                writeString(out, accounts.get(i));
+                out.writeInt(accountFirstRow.get(i));
+                out.writeInt((i + 1 < accounts.size() ? accountFirstRow.get(i + 1) : rowCount) - accountFirstRow.get(i));
+            }
+            writeDictionary(out, types);
+            writeDictionary(out, descriptions);
+            out.writeInt(totals.size());
+            for (long[] t : totals) {
+                out.writeInt((int) t[0]);
+                out.writeInt((int) t[1]);
+                out.writeLong(t[2]);
+                out.writeLong(t[3]);
+                out.writeLong(t[4]);
+            }
+            out.writeInt(groups.size());
+            for (long[] g : groups) {
+                out.writeInt((int) g[0]);
+                out.writeInt((int) g[1]);
+                out.writeLong(g[2]);
+                out.writeInt((int) g[3]);
+                out.writeInt((int) g[4]);
+            }
+            out.writeLong(directoryOffset);
+            out.writeLong(MAGIC);
+        }
+
+        private void flushAccountTotals() {
+            totals.addAll(accountTotals.values());
+            accountTotals.clear();
+        }
+        //writes the buffered columns one after the other as one deflated block
+        private void writeGroup(DataOutputStream out) throws IOException {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            for (ColumnBuffer column : columns) {
+                column.writeTo(raw);
+                column.reset();
+            }
+            byte[] rawBytes = raw.toByteArray();
+
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(rawBytes.length / 4);
+            try {
+                deflater.setInput(rawBytes);
+                deflater.finish();
+                byte[] chunk = new byte[8192];
+                while (!deflater.finished()) {
+                    compressed.write(chunk, 0, deflater.deflate(chunk));
+                }
+            } finally {
+                deflater.end();
+            }
+
+            groups.add(new long[] { groupFirstRow, groupRows, out.size(), compressed.size(), rawBytes.length });
+            compressed.writeTo(out);
+            groupFirstRow = rowCount;
+            groupRows = 0;
+            previousMicros = 0;
+        }
+
+        private static void writeDictionary(DataOutputStream out, Map<String, Integer> dictionary) throws IOException {
+            String[] values = new String[dictionary.size()];
+            dictionary.forEach((value, code) -> values[code] = value);
+            out.writeInt(values.length);
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    //a growable byte buffer for one column of the row group being written
+    private static class ColumnBuffer extends ByteArrayOutputStream {
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    //what an archived segment adds to one account's summary for one transaction type
+    static class Totals {
+        private final String accountNumber;
+        private final String transactionType;
+        private final long count;
+        private final long amountCents;
+        private final LocalDateTime lastPosting;
+
+        Totals(String accountNumber, String transactionType, long count, long amountCents, LocalDateTime lastPosting) {
+            this.accountNumber = accountNumber;
+            this.transactionType = transactionType;
+            this.count = count;
+            this.amountCents = amountCents;
+            this.lastPosting = lastPosting;
+        }
+
+        String getAccountNumber() { return accountNumber; }
+        String getTransactionType() { return transactionType; }
+        long getCount() { return count; }
+        long getAmountCents() { return amountCents; }
+        LocalDateTime getLastPosting() { return lastPosting; }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readVarString(ByteBuffer in) {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String[] readStrings(ByteBuffer in) {
+        String[] values = new String[in.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    //timestamps are stored as microseconds of the local date-time, read as if it were UTC
+    private static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                                           (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+}
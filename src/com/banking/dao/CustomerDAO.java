@@ -48,15 +48,7 @@ public class CustomerDAO {
             ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
-                Customer customer = new Customer(
-                    rs.getString("customer_id"),
-                    rs.getString("first_name"),
-                    rs.getString("surname"),
-                    rs.getString("address")
-                );
-                customer.setPhoneNumber(rs.getString("phone_number"));
-                customer.setEmail(rs.getString("email"));
-                return customer;
+                return createCustomerFromResultSet(rs);
             }
             
         } catch (SQLException e) {
@@ -75,14 +67,7 @@ public class CustomerDAO {
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
-                Customer customer = new Customer(
-                    rs.getString("customer_id"),
-                    rs.getString("first_name"),
-                    rs.getString("surname"),
-                    rs.getString("address")
-                );
-                customer.setPhoneNumber(rs.getString("phone_number"));
-                customer.setEmail(rs.getString("email"));
+                Customer customer = createCustomerFromResultSet(rs);
                 customers.add(customer);
             }
             
@@ -148,14 +133,7 @@ public class CustomerDAO {
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                Customer customer = new Customer(
-                    rs.getString("customer_id"),
-                    rs.getString("first_name"),
-                    rs.getString("surname"),
-                    rs.getString("address")
-                );
-                customer.setPhoneNumber(rs.getString("phone_number"));
-                customer.setEmail(rs.getString("email"));
+                Customer customer = createCustomerFromResultSet(rs);
                 customers.add(customer);
             }
             
@@ -165,6 +143,18 @@ public class CustomerDAO {
         
         return customers;
     }
+    //converts a database row into a Customer object, also used by AccountDAO for joined account rows
+    static Customer createCustomerFromResultSet(ResultSet rs) throws SQLException {
+        Customer customer = new Customer(
+            rs.getString("customer_id"),
+            rs.getString("first_name"),
+            rs.getString("surname"),
+            rs.getString("address")
+        );
+        customer.setPhoneNumber(rs.getString("phone_number"));
+        customer.setEmail(rs.getString("email"));
+        return customer;
+    }
     //returns true if a customer with the given ID exists
     public boolean exists(String customerId) {
         String sql = "SELECT COUNT(*) FROM customers WHERE customer_id = ?";
@@ -0,0 +1,145 @@
+package com.banking.dao;
+
+import com.banking.dao.IdempotencyDAO.KeyRecord;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+//keeps recently used idempotency keys in memory so a repeated request is answered without the database.
+//Lookups are one ConcurrentHashMap get and take no lock. Keys are also queued in the order they were added;
+//every key lives for the same time, so the oldest key is always the next to expire, and trimming to the size
+//limit or dropping expired keys only ever looks at the head of the queue. A key that fell out of the cache is
+//still found in the idempotency_keys table
+public class IdempotencyCache {
+    //keys kept in memory, e.g. -Dbanking.idempotency.cache.size=500000
+    public static final String SIZE_PROPERTY = "banking.idempotency.cache.size";
+    //how long a key is kept in memory, e.g. -Dbanking.idempotency.ttl.minutes=60
+    public static final String TTL_PROPERTY = "banking.idempotency.ttl.minutes";
+    private static final int DEFAULT_SIZE = 100_000;
+    private static final long DEFAULT_TTL_MINUTES = 24 * 60;
+
+    private static IdempotencyCache instance;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    //counters exposed through getStatistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public IdempotencyCache(int maxSize, long ttlMinutes) {
+        if (maxSize < 0 || ttlMinutes < 1) {
+            throw new IllegalArgumentException("Invalid idempotency cache settings: size=" + maxSize +
+                                               ", ttl=" + ttlMinutes + "min");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+    }
+    //the cache shared by every DAO, sized from the system properties
+    public static synchronized IdempotencyCache getInstance() {
+        if (instance == null) {
+            instance = new IdempotencyCache(Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE),
+                                            Long.getLong(TTL_PROPERTY, DEFAULT_TTL_MINUTES));
+        }
+        return instance;
+    }
+    //how long keys are kept; the database keeps them at least as long
+    public long getTtlMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+    //the record for key, or null if it is not cached or has expired
+    KeyRecord get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.expiresAt - System.nanoTime() <= 0) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.record;
+    }
+    //remembers a key once its posting is committed; a key that is already cached is left as it is
+    void put(KeyRecord record) {
+        if (maxSize == 0) {
+            return;
+        }
+        Entry entry = new Entry(record, System.nanoTime() + ttlNanos);
+        if (entries.putIfAbsent(record.getKey(), entry) != null) {
+            return;
+        }
+        order.add(entry);
+        size.incrementAndGet();
+        trim();
+    }
+    //forgets every key
+    public void clear() {
+        Entry entry;
+        while ((entry = order.poll()) != null) {
+            entries.remove(entry.record.getKey(), entry);
+            size.decrementAndGet();
+        }
+    }
+    //returns a snapshot of the cache counters
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(size.get(), maxSize, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private void trim() {
+        long now = System.nanoTime();
+        Entry head;
+        while ((head = order.peek()) != null && (size.get() > maxSize || head.expiresAt - now <= 0)) {
+            //another thread may be trimming too; only the one that takes the head off the queue removes it
+            if (order.remove(head)) {
+                entries.remove(head.record.getKey(), head);
+                size.decrementAndGet();
+                evictions.increment();
+            }
+        }
+    }
+
+    //a cached key and when it expires, in System.nanoTime terms
+    private static class Entry {
+        private final KeyRecord record;
+        private final long expiresAt;
+
+        Entry(KeyRecord record, long expiresAt) {
+            this.record = record;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    //point-in-time view of the cache
+    public static class CacheStatistics {
+        private final int keys;
+        private final int maxKeys;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        public CacheStatistics(int keys, int maxKeys, long hits, long misses, long evictions) {
+            this.keys = keys;
+            this.maxKeys = maxKeys;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public int getKeys() { return keys; }
+        public int getMaxKeys() { return maxKeys; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+
+        @Override
+        public String toString() {
+            return String.format("IdempotencyCache[Keys=%d/%d, %d hits/%d misses/%d evictions]",
+                keys, maxKeys, hits, misses, evictions);
+        }
+    }
+}
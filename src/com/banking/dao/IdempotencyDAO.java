@@ -0,0 +1,188 @@
+package com.banking.dao;
+
+import com.banking.database.DatabaseManager;
+import com.banking.model.Money;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//idempotency keys of postings that went through. A key is inserted on the posting's own connection, in the same
+//database transaction, so either both are committed or neither is; the primary key on idempotency_key makes a
+//second posting with the same key fail and roll back, however the two requests were timed
+public class IdempotencyDAO {
+    //the longest key a caller may send
+    public static final int MAX_KEY_LENGTH = 64;
+    //SQLState for a unique or primary key violation
+    private static final String DUPLICATE_KEY_STATE = "23505";
+    private static final String RECORD_COLUMNS = "idempotency_key, request_type, account_number, to_account, " +
+                                                 "amount, balance, to_balance, reference, created_on";
+
+    private DatabaseManager dbManager;
+    private final IdempotencyCache cache;
+
+    public IdempotencyDAO() {
+        //sets up connection to the databse
+        this.dbManager = DatabaseManager.getInstance();
+        this.cache = IdempotencyCache.getInstance();
+    }
+    //the record for key if it is in memory, or null; takes no lock and does no I/O, so it can run before
+    //every keyed posting
+    public KeyRecord findCached(String key) {
+        return cache.get(key);
+    }
+    //the record for key from memory or the database, or null if the key was never used
+    public KeyRecord find(String key) {
+        KeyRecord cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        String sql = "SELECT " + RECORD_COLUMNS + " FROM idempotency_keys WHERE idempotency_key = ?";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, key);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (!rs.next()) {
+                return null;
+            }
+            KeyRecord record = createRecordFromResultSet(rs);
+            cache.put(record);
+            return record;
+
+        } catch (SQLException e) {
+            System.err.println("Error finding idempotency key: " + e.getMessage());
+            return null;
+        }
+    }
+    //deletes keys created before cutoff and returns how many; a deleted key can be used again
+    public int deleteCreatedBefore(LocalDateTime cutoff) {
+        String sql = "DELETE FROM idempotency_keys WHERE created_on < ?";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setTimestamp(1, Timestamp.valueOf(cutoff));
+            return pstmt.executeUpdate();
+
+        } catch (SQLException e) {
+            System.err.println("Error deleting idempotency keys: " + e.getMessage());
+            return 0;
+        }
+    }
+    //true if the exception is the duplicate key error insert raises for a key that was used before
+    public static boolean isDuplicateKey(SQLException e) {
+        return DUPLICATE_KEY_STATE.equals(e.getSQLState());
+    }
+    //the records of those keys that were used before, read on the caller's connection in one query; used by
+    //batch postings to leave out what an earlier run already posted
+    Map<String, KeyRecord> findAll(Connection conn, Collection<String> keys) throws SQLException {
+        String sql = "SELECT " + RECORD_COLUMNS + " FROM idempotency_keys WHERE idempotency_key = ANY(?)";
+        Map<String, KeyRecord> records = new HashMap<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("VARCHAR", keys.toArray()));
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                KeyRecord record = createRecordFromResultSet(rs);
+                records.put(record.getKey(), record);
+                cache.put(record);
+            }
+        }
+        return records;
+    }
+    //writes the key on the caller's connection; the caller commits it together with the posting
+    void insert(Connection conn, KeyRecord record) throws SQLException {
+        insertBatch(conn, List.of(record));
+    }
+    //writes several keys on the caller's connection as one JDBC batch
+    void insertBatch(Connection conn, List<KeyRecord> records) throws SQLException {
+        String sql = "INSERT INTO idempotency_keys (" + RECORD_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (KeyRecord record : records) {
+                pstmt.setString(1, record.getKey());
+                pstmt.setString(2, record.getRequestType());
+                pstmt.setString(3, record.getAccountNumber());
+                pstmt.setString(4, record.getToAccount());
+                pstmt.setBigDecimal(5, Money.toDecimal(record.getAmountCents()));
+                pstmt.setBigDecimal(6, Money.toDecimal(record.getBalanceCents()));
+                pstmt.setBigDecimal(7, record.getToAccount() == null ? null : Money.toDecimal(record.getToBalanceCents()));
+                pstmt.setString(8, record.getReference());
+                pstmt.setTimestamp(9, Timestamp.valueOf(record.getCreatedOn()));
+                if (records.size() == 1) {
+                    pstmt.executeUpdate();
+                    return;
+                }
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+    //caches a key once the posting it was inserted with is committed
+    void remember(KeyRecord record) {
+        cache.put(record);
+    }
+
+    private static KeyRecord createRecordFromResultSet(ResultSet rs) throws SQLException {
+        return new KeyRecord(
+            rs.getString("idempotency_key"),
+            rs.getString("request_type"),
+            rs.getString("account_number"),
+            rs.getString("to_account"),
+            Money.fromDecimal(rs.getBigDecimal("amount")),
+            Money.fromDecimal(rs.getBigDecimal("balance")),
+            rs.getBigDecimal("to_balance") == null ? 0 : Money.fromDecimal(rs.getBigDecimal("to_balance")),
+            rs.getString("reference"),
+            rs.getTimestamp("created_on").toLocalDateTime()
+        );
+    }
+
+    //what a keyed posting did: the request it answered, the balances it left and its transaction or transfer id
+    public static class KeyRecord {
+        private final String key;
+        private final String requestType;
+        private final String accountNumber;
+        private final String toAccount;
+        private final long amountCents;
+        private final long balanceCents;
+        private final long toBalanceCents;
+        private final String reference;
+        private final LocalDateTime createdOn;
+
+        public KeyRecord(String key, String requestType, String accountNumber, String toAccount, long amountCents,
+                         long balanceCents, long toBalanceCents, String reference, LocalDateTime createdOn) {
+            this.key = key;
+            this.requestType = requestType;
+            this.accountNumber = accountNumber;
+            this.toAccount = toAccount;
+            this.amountCents = amountCents;
+            this.balanceCents = balanceCents;
+            this.toBalanceCents = toBalanceCents;
+            this.reference = reference;
+            this.createdOn = createdOn;
+        }
+
+        public String getKey() { return key; }
+        public String getRequestType() { return requestType; }
+        public String getAccountNumber() { return accountNumber; }
+        public String getToAccount() { return toAccount; }
+        public long getAmountCents() { return amountCents; }
+        public long getBalanceCents() { return balanceCents; }
+        public long getToBalanceCents() { return toBalanceCents; }
+        public String getReference() { return reference; }
+        public LocalDateTime getCreatedOn() { return createdOn; }
+        //true if this key was recorded for the same request, so repeating it may return the first result
+        public boolean matches(String requestType, String accountNumber, String toAccount, long amountCents) {
+            return this.requestType.equals(requestType) && this.accountNumber.equals(accountNumber)
+                   && (toAccount == null ? this.toAccount == null : toAccount.equals(this.toAccount))
+                   && this.amountCents == amountCents;
+        }
+    }
+}
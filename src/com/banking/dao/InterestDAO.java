@@ -0,0 +1,178 @@
+package com.banking.dao;
+
+import com.banking.database.DatabaseManager;
+import com.banking.model.Account;
+import com.banking.model.InvestmentAccount;
+import com.banking.model.Money;
+import com.banking.model.SavingsAccount;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+
+//posts monthly interest with set-based SQL, one chunk of accounts (by account number) at a time,
+//recording each account paid in interest_postings so a period is never paid twice
+public class InterestDAO {
+    //interest for the row's current balance in whole cents, times the rate in parts per million, in BIGINT
+    private static final String INTEREST_MICROCENTS =
+        "CAST(balance * 100 AS BIGINT) * CASE WHEN balance <= 0 THEN 0 ELSE CASE account_type " +
+        "WHEN 'Savings Account' THEN " + SavingsAccount.getMonthlyRatePpm() + " " +
+        "WHEN 'Investment Account' THEN " + InvestmentAccount.getMonthlyRatePpm() + " " +
+        "ELSE 0 END END";
+    //the interest rounded to cents exactly as Account.calculateInterest rounds it, as a DECIMAL amount;
+    //zero for accounts that earn none
+    private static final String INTEREST =
+        "(" + Money.sqlDivide(INTEREST_MICROCENTS, Money.PPM, Account.getInterestRounding()) + " * 0.01)";
+    //the accounts of one chunk that are due interest; the range keeps each chunk on the primary key index
+    private static final String CHUNK =
+        "WHERE account_number > ? AND account_number <= ? AND " + INTEREST + " > 0 ";
+
+    private DatabaseManager dbManager;
+    private TransactionPartitionDAO partitionDAO;
+
+    public InterestDAO() {
+        //sets up connection to the databse
+        this.dbManager = DatabaseManager.getInstance();
+        this.partitionDAO = new TransactionPartitionDAO();
+    }
+    //credits interest for the period to every account in (afterAccountNumber, upToAccountNumber] that is due
+    //interest and has not been paid for that period yet, and writes their ledger rows, all in one database
+    //transaction; running the same chunk again pays nobody twice
+    public ChunkResult postInterestChunk(String period, String afterAccountNumber,
+                                         String upToAccountNumber) throws SQLException {
+        String notYetPaid = "AND NOT EXISTS (SELECT 1 FROM interest_postings p " +
+                            "WHERE p.period = ? AND p.account_number = accounts.account_number) ";
+        String thisChunk = "WHERE period = ? AND account_number > ? AND account_number <= ? AND NOT credited";
+        //the primary key on (period, account_number) rejects a second posting even if two workers race
+        String recordSql = "INSERT INTO interest_postings (period, account_number, amount, transaction_id) " +
+                           "SELECT ?, account_number, " + INTEREST + ", ? || account_number " +
+                           "FROM accounts " + CHUNK + notYetPaid;
+        String totalSql = "SELECT COUNT(*), COALESCE(SUM(amount), 0) FROM interest_postings " + thisChunk;
+        //the credit adds to the balance rather than overwriting it, so concurrent postings are not lost
+        String creditSql = "MERGE INTO accounts a USING (SELECT account_number, amount FROM interest_postings " +
+                           thisChunk + ") p ON a.account_number = p.account_number " +
+                           "WHEN MATCHED THEN UPDATE SET balance = a.balance + p.amount, version = a.version + 1";
+        //runs after the credit, which holds the row locks, so balance is exactly the balance after interest
+        Timestamp postedAt = Timestamp.valueOf(LocalDateTime.now());
+        String ledgerSql = "INSERT INTO " + partitionDAO.tableFor(postedAt.toLocalDateTime()) +
+                           " (transaction_id, account_number, transaction_type, " +
+                           "amount, balance_after, description, transaction_timestamp) " +
+                           "SELECT p.transaction_id, p.account_number, 'INTEREST', p.amount, " +
+                           "a.balance, 'Monthly interest applied', ? " +
+                           "FROM interest_postings p JOIN accounts a ON a.account_number = p.account_number " +
+                           "WHERE p.period = ? AND p.account_number > ? AND p.account_number <= ? " +
+                           "AND NOT p.credited";
+        //keeps the running totals in account_summary in step with the ledger rows just written
+        String summarySql = "MERGE INTO account_summary s USING (" +
+                            "SELECT account_number, SUM(amount) amount, COUNT(*) cnt FROM interest_postings " +
+                            thisChunk + " GROUP BY account_number) p " +
+                            "ON s.account_number = p.account_number AND s.transaction_type = 'INTEREST' " +
+                            "WHEN MATCHED THEN UPDATE SET total_amount = s.total_amount + p.amount, " +
+                            "transaction_count = s.transaction_count + p.cnt, " +
+                            "last_posting = GREATEST(s.last_posting, ?) " +
+                            "WHEN NOT MATCHED THEN INSERT (account_number, transaction_type, total_amount, " +
+                            "transaction_count, last_posting) VALUES (p.account_number, 'INTEREST', p.amount, p.cnt, ?)";
+        String markSql = "UPDATE interest_postings SET credited = TRUE " + thisChunk;
+
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = conn.prepareStatement(recordSql)) {
+                    pstmt.setString(1, period);
+                    pstmt.setString(2, transactionIdPrefix(period));
+                    pstmt.setString(3, afterAccountNumber);
+                    pstmt.setString(4, upToAccountNumber);
+                    pstmt.setString(5, period);
+                    pstmt.executeUpdate();
+                }
+
+                int accounts;
+                long totalInterestCents;
+                try (PreparedStatement pstmt = conn.prepareStatement(totalSql)) {
+                    setChunk(pstmt, 1, period, afterAccountNumber, upToAccountNumber);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        rs.next();
+                        accounts = rs.getInt(1);
+                        totalInterestCents = Money.fromDecimal(rs.getBigDecimal(2));
+                    }
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(creditSql)) {
+                    setChunk(pstmt, 1, period, afterAccountNumber, upToAccountNumber);
+                    pstmt.executeUpdate();
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(ledgerSql)) {
+                    pstmt.setTimestamp(1, postedAt);
+                    setChunk(pstmt, 2, period, afterAccountNumber, upToAccountNumber);
+                    pstmt.executeUpdate();
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(summarySql)) {
+                    setChunk(pstmt, 1, period, afterAccountNumber, upToAccountNumber);
+                    pstmt.setTimestamp(4, postedAt);
+                    pstmt.setTimestamp(5, postedAt);
+                    pstmt.executeUpdate();
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(markSql)) {
+                    setChunk(pstmt, 1, period, afterAccountNumber, upToAccountNumber);
+                    pstmt.executeUpdate();
+                }
+
+                conn.commit();
+                //the ledger rows were written by SQL, so the chunk's cached accounts are read again when next used
+                RecentTransactionCache.getInstance().invalidateRange(afterAccountNumber, upToAccountNumber);
+                return new ChunkResult(accounts, totalInterestCents);
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    //returns how many accounts have been paid interest for the period
+    public int countPostings(String period) {
+        String sql = "SELECT COUNT(*) FROM interest_postings WHERE period = ?";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, period);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error counting interest postings: " + e.getMessage());
+        }
+
+        return 0;
+    }
+    //interest transaction ids are the period plus the account number, so each is unique and predictable
+    private static String transactionIdPrefix(String period) {
+        return "INT" + period.replace("-", "") + "-";
+    }
+
+    private void setChunk(PreparedStatement pstmt, int firstIndex, String period, String afterAccountNumber,
+                          String upToAccountNumber) throws SQLException {
+        pstmt.setString(firstIndex, period);
+        pstmt.setString(firstIndex + 1, afterAccountNumber);
+        pstmt.setString(firstIndex + 2, upToAccountNumber);
+    }
+
+    //accounts credited and interest paid by one chunk
+    public static class ChunkResult {
+        private final int accountsProcessed;
+        private final long totalInterestCents;
+
+        public ChunkResult(int accountsProcessed, long totalInterestCents) {
+            this.accountsProcessed = accountsProcessed;
+            this.totalInterestCents = totalInterestCents;
+        }
+
+        public int getAccountsProcessed() { return accountsProcessed; }
+        public long getTotalInterestCents() { return totalInterestCents; }
+    }
+}
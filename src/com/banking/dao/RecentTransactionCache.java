@@ -0,0 +1,300 @@
+package com.banking.dao;
+
+import com.banking.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//keeps the newest transactions of recently read accounts in memory, one fixed-size ring per account, so
+//"last few postings" lookups are answered without JDBC. An account's ring is created by the first read that
+//misses and is then kept current by the posting paths, which add each transaction once it is committed.
+//Rings are evicted least recently read or posted to first whenever the estimated size of everything cached
+//goes over the budget. One lock guards the whole cache; every operation under it is a few array or map steps
+public class RecentTransactionCache {
+    //transactions kept per account, e.g. -Dbanking.recent.cache.transactions=50
+    public static final String TRANSACTIONS_PROPERTY = "banking.recent.cache.transactions";
+    //estimated bytes the whole cache may use, e.g. -Dbanking.recent.cache.bytes=0 turns the cache off
+    public static final String BUDGET_PROPERTY = "banking.recent.cache.bytes";
+    private static final int DEFAULT_TRANSACTIONS_PER_ACCOUNT = 25;
+    private static final long DEFAULT_BUDGET_BYTES = 8L * 1024 * 1024;
+    //rough heap cost of a Transaction with its LocalDateTime and strings, not counting the string contents
+    private static final long TRANSACTION_OVERHEAD_BYTES = 200;
+    //rough heap cost of a ring without its transactions: the map entry, the ring object and its account number
+    private static final long RING_OVERHEAD_BYTES = 160;
+
+    private static RecentTransactionCache instance;
+
+    private final int transactionsPerAccount;
+    private final long budgetBytes;
+    //rings in least-recently-used order: reading or posting moves a ring to the end, eviction starts at the front
+    private final LinkedHashMap<String, Ring> rings = new LinkedHashMap<>(64, 0.75f, true);
+    //accounts being read from the database to fill a ring, and the transactions committed meanwhile
+    private final Map<String, Load> loads = new HashMap<>();
+    private long usedBytes;
+
+    //counters exposed through getStatistics
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public RecentTransactionCache(int transactionsPerAccount, long budgetBytes) {
+        if (transactionsPerAccount < 1 || budgetBytes < 0) {
+            throw new IllegalArgumentException("Invalid recent transaction cache size: " + transactionsPerAccount +
+                                               " per account, " + budgetBytes + " bytes");
+        }
+        this.transactionsPerAccount = transactionsPerAccount;
+        this.budgetBytes = budgetBytes;
+    }
+    //the cache shared by every DAO, sized from the system properties
+    public static synchronized RecentTransactionCache getInstance() {
+        if (instance == null) {
+            instance = new RecentTransactionCache(
+                Integer.getInteger(TRANSACTIONS_PROPERTY, DEFAULT_TRANSACTIONS_PER_ACCOUNT),
+                Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET_BYTES));
+        }
+        return instance;
+    }
+    //how many transactions per account a ring holds; larger limits are always read from the database
+    public int getTransactionsPerAccount() {
+        return transactionsPerAccount;
+    }
+    //the newest limit transactions of the account, newest first, or null if the cache cannot answer
+    synchronized List<Transaction> get(String accountNumber, int limit) {
+        Ring ring = budgetBytes == 0 ? null : rings.get(accountNumber);
+        if (ring == null || (limit > ring.size && !ring.complete)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        int count = Math.min(limit, ring.size);
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(ring.get(i));
+        }
+        return transactions;
+    }
+    //called before reading an account's newest transactions to fill its ring; transactions committed for the
+    //account until finishLoad are remembered so the ring does not miss them
+    synchronized Object startLoad(String accountNumber) {
+        return loads.computeIfAbsent(accountNumber, Load::new);
+    }
+    //installs the ring read from the database, newest first; complete means the account has no older
+    //transactions. Does nothing if the account was invalidated or another reader installed it first
+    synchronized void finishLoad(Object token, List<Transaction> newestFirst, boolean complete) {
+        Load load = (Load) token;
+        if (budgetBytes == 0 || loads.get(load.accountNumber) != load) {
+            return;
+        }
+        loads.remove(load.accountNumber);
+
+        Ring ring = new Ring(load.accountNumber, complete);
+        usedBytes += RING_OVERHEAD_BYTES;
+        for (int i = Math.min(newestFirst.size(), transactionsPerAccount) - 1; i >= 0; i--) {
+            add(ring, newestFirst.get(i));
+        }
+        if (newestFirst.size() > transactionsPerAccount) {
+            ring.complete = false;
+        }
+        for (Transaction transaction : load.committed) {
+            add(ring, transaction);
+        }
+        Ring replaced = rings.put(load.accountNumber, ring);
+        if (replaced != null) {
+            usedBytes -= replaced.bytes;
+        }
+        evictOverBudget();
+    }
+    //drops a load that could not finish; does nothing once finishLoad has run
+    synchronized void cancelLoad(Object token) {
+        Load load = (Load) token;
+        loads.remove(load.accountNumber, load);
+    }
+    //adds a committed transaction to its account's ring, if the account is cached or being loaded
+    synchronized void add(Transaction transaction) {
+        Load load = loads.get(transaction.getAccountNumber());
+        if (load != null) {
+            load.committed.add(transaction);
+        }
+        //a posting counts as a use too, so an account that is busy stays cached
+        Ring ring = rings.get(transaction.getAccountNumber());
+        if (ring != null) {
+            add(ring, transaction);
+            evictOverBudget();
+        }
+    }
+    //adds a batch of committed transactions
+    synchronized void addAll(List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            add(transaction);
+        }
+    }
+    //forgets an account, e.g. after its transactions were deleted
+    synchronized void invalidate(String accountNumber) {
+        loads.remove(accountNumber);
+        Ring ring = rings.remove(accountNumber);
+        if (ring != null) {
+            usedBytes -= ring.bytes;
+        }
+    }
+    //forgets the accounts in (afterAccountNumber, upToAccountNumber], after set-based SQL wrote their ledger rows
+    synchronized void invalidateRange(String afterAccountNumber, String upToAccountNumber) {
+        loads.keySet().removeIf(accountNumber -> inRange(accountNumber, afterAccountNumber, upToAccountNumber));
+        Iterator<Ring> iterator = rings.values().iterator();
+        while (iterator.hasNext()) {
+            Ring ring = iterator.next();
+            if (inRange(ring.accountNumber, afterAccountNumber, upToAccountNumber)) {
+                usedBytes -= ring.bytes;
+                iterator.remove();
+            }
+        }
+    }
+    //forgets every account, e.g. after a partition of the ledger was dropped
+    public synchronized void clear() {
+        loads.clear();
+        rings.clear();
+        usedBytes = 0;
+    }
+    //returns a snapshot of the cache counters
+    public synchronized CacheStatistics getStatistics() {
+        long transactions = 0;
+        for (Ring ring : rings.values()) {
+            transactions += ring.size;
+        }
+        return new CacheStatistics(rings.size(), transactions, usedBytes, budgetBytes, hits, misses, evictions);
+    }
+
+    private static boolean inRange(String accountNumber, String afterAccountNumber, String upToAccountNumber) {
+        return accountNumber.compareTo(afterAccountNumber) > 0 && accountNumber.compareTo(upToAccountNumber) <= 0;
+    }
+
+    private void add(Ring ring, Transaction transaction) {
+        long before = ring.bytes;
+        ring.add(transaction);
+        usedBytes += ring.bytes - before;
+    }
+
+    private void evictOverBudget() {
+        Iterator<Ring> iterator = rings.values().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            usedBytes -= iterator.next().bytes;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static long estimateBytes(Transaction transaction) {
+        return TRANSACTION_OVERHEAD_BYTES + transaction.getTransactionId().length()
+               + (transaction.getDescription() == null ? 0 : transaction.getDescription().length());
+    }
+
+    //one account's newest transactions, newest at head, in the same order as the ledger queries
+    //(timestamp, then transaction id, descending); once full, each new transaction overwrites the oldest
+    private class Ring {
+        private final String accountNumber;
+        private final Transaction[] slots = new Transaction[transactionsPerAccount];
+        private int head;
+        private int size;
+        //true while the ring holds every transaction the account has
+        private boolean complete;
+        private long bytes = RING_OVERHEAD_BYTES;
+
+        Ring(String accountNumber, boolean complete) {
+            this.accountNumber = accountNumber;
+            this.complete = complete;
+        }
+        //the i-th newest transaction
+        Transaction get(int i) {
+            return slots[(head + i) % slots.length];
+        }
+
+        private void set(int i, Transaction transaction) {
+            slots[(head + i) % slots.length] = transaction;
+        }
+        //inserts in order; postings of one account are committed one after the other, so this is almost
+        //always the new head, but two committers may report back in the opposite order
+        void add(Transaction transaction) {
+            int position = 0;
+            while (position < size && !isNewer(transaction, get(position))) {
+                if (get(position).getTransactionId().equals(transaction.getTransactionId())) {
+                    return;
+                }
+                position++;
+            }
+            if (position == slots.length) {
+                //older than everything kept in a full ring
+                complete = false;
+                return;
+            }
+            if (size == slots.length) {
+                bytes -= estimateBytes(get(size - 1));
+                complete = false;
+            } else {
+                size++;
+            }
+            if (position == 0) {
+                head = (head + slots.length - 1) % slots.length;
+            } else {
+                for (int i = size - 1; i > position; i--) {
+                    set(i, get(i - 1));
+                }
+            }
+            set(position, transaction);
+            bytes += estimateBytes(transaction);
+        }
+
+        private boolean isNewer(Transaction transaction, Transaction other) {
+            int byTime = transaction.getTimestamp().compareTo(other.getTimestamp());
+            return byTime > 0 || (byTime == 0 && transaction.getTransactionId().compareTo(other.getTransactionId()) > 0);
+        }
+    }
+
+    //an account being read from the database and what was committed for it in the meantime
+    private static class Load {
+        private final String accountNumber;
+        private final List<Transaction> committed = new ArrayList<>();
+
+        Load(String accountNumber) {
+            this.accountNumber = accountNumber;
+        }
+    }
+
+    //point-in-time view of the cache; sizes are estimates
+    public static class CacheStatistics {
+        private final int accounts;
+        private final long transactions;
+        private final long usedBytes;
+        private final long budgetBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        public CacheStatistics(int accounts, long transactions, long usedBytes, long budgetBytes, long hits,
+                               long misses, long evictions) {
+            this.accounts = accounts;
+            this.transactions = transactions;
+            this.usedBytes = usedBytes;
+            this.budgetBytes = budgetBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public int getAccounts() { return accounts; }
+        public long getTransactions() { return transactions; }
+        public long getUsedBytes() { return usedBytes; }
+        public long getBudgetBytes() { return budgetBytes; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+
+        @Override
+        public String toString() {
+            return String.format("RecentCache[Accounts=%d, Transactions=%d, Bytes=%d/%d, %d hits/%d misses/%d evictions]",
+                accounts, transactions, usedBytes, budgetBytes, hits, misses, evictions);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.banking.dao;
+
+import com.banking.database.DatabaseManager;
+import com.banking.interfaces.IdAllocator;
+
+import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//hi/lo id allocation: reserves blocks of values from the id_sequences table and hands them out from memory,
+//so only one allocation per block goes to the database; instances sharing a database never get the same block
+public class SequenceDAO implements IdAllocator {
+    public static final int DEFAULT_BLOCK_SIZE = 100;
+
+    //blocks are shared by every SequenceDAO in the process; values left in a block at exit are simply skipped
+    private static final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    private DatabaseManager dbManager;
+    private final int blockSize;
+
+    public SequenceDAO() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    public SequenceDAO(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        //sets up connection to the databse
+        this.dbManager = DatabaseManager.getInstance();
+        this.blockSize = blockSize;
+    }
+    //returns the next value from the current block, reserving a new block when it is used up
+    @Override
+    public long nextId(String sequenceName) {
+        return blocks.computeIfAbsent(sequenceName, name -> new Block()).next(this, sequenceName);
+    }
+    //reserves size values in one statement and returns the first; the row lock taken by the update makes
+    //concurrent reservations from other threads or processes wait, so blocks never overlap
+    long reserveBlock(String sequenceName, int size) {
+        String sql = "SELECT next_value FROM FINAL TABLE (" +
+                     "UPDATE id_sequences SET next_value = next_value + ? WHERE sequence_name = ?)";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, size);
+            pstmt.setString(2, sequenceName);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (!rs.next()) {
+                throw new IllegalArgumentException("Unknown id sequence: " + sequenceName);
+            }
+            return rs.getLong(1) - size;
+
+        } catch (SQLException e) {
+            System.err.println("Error reserving id block: " + e.getMessage());
+            throw new IllegalStateException("Could not reserve ids for sequence " + sequenceName, e);
+        }
+    }
+
+    //the reserved values of one sequence not yet handed out: [next, end)
+    private static class Block {
+        private long next;
+        private long end;
+
+        synchronized long next(SequenceDAO dao, String sequenceName) {
+            if (next >= end) {
+                next = dao.reserveBlock(sequenceName, dao.blockSize);
+                end = next + dao.blockSize;
+            }
+            return next++;
+        }
+    }
+}
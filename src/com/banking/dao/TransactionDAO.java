@@ -1,60 +1,216 @@
 package com.banking.dao;
 
 import com.banking.database.DatabaseManager;
+import com.banking.model.Money;
 import com.banking.model.Transaction;
+import com.banking.model.TransactionIdGenerator;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class TransactionDAO {
+    //rows fetched per round trip when streaming transactions
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    //turns write-behind on at start-up, e.g. -Dbanking.writebehind.enabled=true
+    public static final String WRITE_BEHIND_PROPERTY = "banking.writebehind.enabled";
+    //how long a batch may wait, e.g. -Dbanking.writebehind.flush.ms=20
+    public static final String FLUSH_INTERVAL_PROPERTY = "banking.writebehind.flush.ms";
+    //how many transactions a batch may hold, e.g. -Dbanking.writebehind.batch.size=500
+    public static final String BATCH_SIZE_PROPERTY = "banking.writebehind.batch.size";
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 20;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    //one account's history newest first, read in order from a partition's _recent index instead of sorted;
+    //the index is named in each query because H2 otherwise picks the foreign key's own account_number index,
+    //and the time-ordered transaction id breaks ties within a timestamp
+    private static final String NEWEST_FIRST =
+        "ORDER BY account_number, transaction_timestamp DESC, transaction_id DESC";
+    private static final String INSERT_COLUMNS =
+        " (transaction_id, account_number, transaction_type, amount, balance_after, description, " +
+        "transaction_timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String NEWEST_FIRST_BY_TYPE =
+        "ORDER BY account_number, transaction_type, transaction_timestamp DESC, transaction_id DESC";
+    //continues after the last row of the previous page; the redundant timestamp bound lets the index range
+    //start at that row, so a page deep in the history costs the same as the first
+    private static final String AFTER_PAGE_TOKEN =
+        "AND transaction_timestamp <= ? AND (transaction_timestamp < ? OR transaction_id < ?) ";
+    //shared by every TransactionDAO; null when transactions are written straight away
+    private static volatile TransactionJournal journal;
+    
     private DatabaseManager dbManager;
+    private AccountSummaryDAO summaryDAO;
+    private TransactionPartitionDAO partitionDAO;
+    private RecentTransactionCache recentCache;
     
     public TransactionDAO() {
         //sets up connection to the databse
         this.dbManager = DatabaseManager.getInstance();
+        this.summaryDAO = new AccountSummaryDAO();
+        this.partitionDAO = new TransactionPartitionDAO();
+        this.recentCache = RecentTransactionCache.getInstance();
+    }
+    //switches save() to write-behind with the flush interval and batch size from the system properties
+    public static void enableWriteBehind() {
+        enableWriteBehind(Long.getLong(FLUSH_INTERVAL_PROPERTY, DEFAULT_FLUSH_INTERVAL_MS),
+                          Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE));
+    }
+    //switches save() to write-behind: transactions are queued and written in group-committed batches
+    public static synchronized void enableWriteBehind(long flushIntervalMillis, int batchSize) {
+        if (journal == null) {
+            journal = new TransactionJournal(new TransactionDAO(), flushIntervalMillis, batchSize);
+        }
+    }
+    //writes everything still queued and goes back to writing each transaction straight away
+    public static synchronized void disableWriteBehind() {
+        if (journal != null) {
+            TransactionJournal draining = journal;
+            journal = null;
+            draining.shutdown();
+        }
     }
-    //adds transaction to the databse
+    
+    public static boolean isWriteBehindEnabled() {
+        return journal != null;
+    }
+    //adds transaction to the databse; in write-behind mode it is only queued and true means accepted
     public boolean save(Transaction transaction) {
-        String sql = "INSERT INTO transactions (transaction_id, account_number, transaction_type, " +
-                     "amount, balance_after, description, transaction_timestamp) " +
-                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        TransactionJournal current = journal;
+        //a journal that was shut down after it was read refuses the transaction, which is then written here
+        if (current != null && current.append(transaction) != null) {
+            return true;
+        }
+        return saveNow(transaction);
+    }
+    //adds transaction to the databse; the future completes once it is actually committed
+    public CompletableFuture<Boolean> saveAsync(Transaction transaction) {
+        TransactionJournal current = journal;
+        CompletableFuture<Boolean> queued = current != null ? current.append(transaction) : null;
+        if (queued != null) {
+            return queued;
+        }
+        return CompletableFuture.completedFuture(saveNow(transaction));
+    }
+    //writes the transaction immediately in its own database transaction
+    boolean saveNow(Transaction transaction) {
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                boolean saved = insert(conn, transaction);
+                conn.commit();
+                recentCache.add(transaction);
+                return saved;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error saving transaction: " + e.getMessage());
+            return false;
+        }
+    }
+    //inserts a transaction into its month's partition and adds it to the account summary on the caller's
+    //connection, so both share the caller's database transaction
+    boolean insert(Connection conn, Transaction transaction) throws SQLException {
+        String sql = "INSERT INTO " + partitionDAO.tableFor(transaction.getTimestamp()) + INSERT_COLUMNS;
         
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, transaction.getTransactionId());
             pstmt.setString(2, transaction.getAccountNumber());
             pstmt.setString(3, transaction.getTransactionType());
-            pstmt.setDouble(4, transaction.getAmount());
-            pstmt.setDouble(5, transaction.getBalanceAfter());
+            pstmt.setBigDecimal(4, Money.toDecimal(transaction.getAmountCents()));
+            pstmt.setBigDecimal(5, Money.toDecimal(transaction.getBalanceAfterCents()));
             pstmt.setString(6, transaction.getDescription());
             pstmt.setTimestamp(7, Timestamp.valueOf(transaction.getTimestamp()));
             
             int rowsAffected = pstmt.executeUpdate();
+            summaryDAO.record(conn, transaction);
             return rowsAffected > 0;
-            
-        } catch (SQLException e) {
-            System.err.println("Error saving transaction: " + e.getMessage());
-            return false;
         }
     }
-    //looks for a transaction in the databse by id and returns the transaction object if found, otherwise null
+    //inserts several transactions on the caller's connection as one JDBC batch per partition,
+    //then updates their summaries
+    void insertBatch(Connection conn, List<Transaction> transactions) throws SQLException {
+        Map<String, List<Transaction>> byPartition = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            byPartition.computeIfAbsent(partitionDAO.tableFor(transaction.getTimestamp()),
+                                        table -> new ArrayList<>()).add(transaction);
+        }
+        
+        for (Map.Entry<String, List<Transaction>> partition : byPartition.entrySet()) {
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO " + partition.getKey() + INSERT_COLUMNS)) {
+                for (Transaction transaction : partition.getValue()) {
+                    pstmt.setString(1, transaction.getTransactionId());
+                    pstmt.setString(2, transaction.getAccountNumber());
+                    pstmt.setString(3, transaction.getTransactionType());
+                    pstmt.setBigDecimal(4, Money.toDecimal(transaction.getAmountCents()));
+                    pstmt.setBigDecimal(5, Money.toDecimal(transaction.getBalanceAfterCents()));
+                    pstmt.setString(6, transaction.getDescription());
+                    pstmt.setTimestamp(7, Timestamp.valueOf(transaction.getTimestamp()));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+        summaryDAO.recordAll(conn, transactions);
+    }
+    //looks for a transaction in the databse by id and returns the transaction object if found, otherwise null;
+    //generated ids carry their posting time, so usually only that month's partition is read
     public Transaction findById(String transactionId) {
-        String sql = "SELECT * FROM transactions WHERE transaction_id = ?";
+        String sql = "SELECT * FROM %s WHERE transaction_id = ?";
+        List<String> tables = new ArrayList<>();
+        LocalDateTime issued = issuedAt(transactionId);
+        List<TransactionPartitionDAO.Partition> archived = new ArrayList<>();
+        for (TransactionPartitionDAO.Partition partition : partitionDAO.findAll()) {
+            boolean issuedHere = issued != null && !partition.getRangeStart().isAfter(issued) &&
+                                 partition.getRangeEnd().isAfter(issued);
+            if (!partition.isArchived()) {
+                if (issuedHere) {
+                    tables.add(partition.getTableName());
+                }
+            } else if (issuedHere) {
+                archived.add(0, partition);
+            } else {
+                archived.add(partition);
+            }
+        }
+        //ids issued just before midnight at month end, and interest ids, may be in another partition
+        tables.add(TransactionPartitionDAO.VIEW);
         
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, transactionId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return createTransactionFromResultSet(rs);
+        try (Connection conn = dbManager.getConnection()) {
+            for (String table : tables) {
+                try (PreparedStatement pstmt = conn.prepareStatement(String.format(sql, table))) {
+                    pstmt.setString(1, transactionId);
+                    ResultSet rs = pstmt.executeQuery();
+                    
+                    if (rs.next()) {
+                        return createTransactionFromResultSet(rs);
+                    }
+                }
+            }
+            //not online, so it is archived; the month it was issued in is read first, then the others
+            List<Transaction> found = new ArrayList<>();
+            for (TransactionPartitionDAO.Partition partition : archived) {
+                partition.segment().scanAll(transaction -> !(transaction.getTransactionId().equals(transactionId) &&
+                                                             found.add(transaction)));
+                if (!found.isEmpty()) {
+                    return found.get(0);
+                }
             }
             
-        } catch (SQLException e) {
+        } catch (SQLException | IOException e) {
             System.err.println("Error finding transaction: " + e.getMessage());
         }
         
@@ -62,167 +218,285 @@ public class TransactionDAO {
     }
     //retrieves all transactions for a specific account number
     public List<Transaction> findByAccountNumber(String accountNumber) {
-        List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE account_number = ? " +
-                     "ORDER BY transaction_timestamp DESC";
-        
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, accountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                transactions.add(createTransactionFromResultSet(rs));
-            }
-            
-        } catch (SQLException e) {
-            System.err.println("Error finding transactions: " + e.getMessage());
-        }
-        
-        return transactions;
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(accountNumber);
+        return findInPartitions(partitionDAO.findAll(), false, "", parameters, transaction -> true, 0,
+                                "Error finding transactions");
     }
-    //gets transactions for an account between two dates
+    //gets transactions for an account between two dates, reading only the partitions of those months
     public List<Transaction> findByAccountAndDateRange(String accountNumber, 
                                                        LocalDateTime startDate, 
                                                        LocalDateTime endDate) {
-        List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions " +
-                     "WHERE account_number = ? " +
-                     "AND transaction_timestamp BETWEEN ? AND ? " +
-                     "ORDER BY transaction_timestamp DESC";
-        
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, accountNumber);
-            pstmt.setTimestamp(2, Timestamp.valueOf(startDate));
-            pstmt.setTimestamp(3, Timestamp.valueOf(endDate));
-            
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                transactions.add(createTransactionFromResultSet(rs));
-            }
-            
-        } catch (SQLException e) {
-            System.err.println("Error finding transactions by date range: " + e.getMessage());
-        }
-        
-        return transactions;
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(accountNumber);
+        parameters.add(Timestamp.valueOf(startDate));
+        parameters.add(Timestamp.valueOf(endDate));
+        return findInPartitions(partitionDAO.partitionsOverlapping(startDate, endDate), false,
+                                "AND transaction_timestamp BETWEEN ? AND ? ", parameters,
+                                between(startDate, endDate), 0, "Error finding transactions by date range");
     }
     //gets transactions for an account by type (e.g., DEPOSIT, WITHDRAWAL)
     public List<Transaction> findByAccountAndType(String accountNumber, String transactionType) {
-        List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions " +
-                     "WHERE account_number = ? AND transaction_type = ? " +
-                     "ORDER BY transaction_timestamp DESC";
-        
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, accountNumber);
-            pstmt.setString(2, transactionType);
-            
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                transactions.add(createTransactionFromResultSet(rs));
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(accountNumber);
+        parameters.add(transactionType);
+        return findInPartitions(partitionDAO.findAll(), true, "", parameters,
+                                transaction -> transaction.getTransactionType().equals(transactionType), 0,
+                                "Error finding transactions by type");
+    }
+    //gets a limited number of recent transactions for an account, reading older months only if needed;
+    //limits up to the recent transaction cache's ring size are answered from memory once the account is cached
+    public List<Transaction> findRecentTransactions(String accountNumber, int limit) {
+        int ringSize = recentCache.getTransactionsPerAccount();
+        if (limit > 0 && limit <= ringSize) {
+            List<Transaction> cached = recentCache.get(accountNumber, limit);
+            if (cached != null) {
+                return cached;
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error finding transactions by type: " + e.getMessage());
         }
         
-        return transactions;
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(accountNumber);
+        if (limit <= 0 || limit > ringSize) {
+            return findInPartitions(partitionDAO.findAll(), false, "", parameters, transaction -> true, limit,
+                                    "Error finding recent transactions");
+        }
+        //fills the account's ring, reading one more than it holds to learn whether there are older transactions
+        List<Transaction> newest = new ArrayList<>();
+        Object load = recentCache.startLoad(accountNumber);
+        try {
+            readPartitions(newest, partitionDAO.findAll(), false, "", parameters, transaction -> true, ringSize + 1);
+            recentCache.finishLoad(load, newest, newest.size() <= ringSize);
+        } catch (SQLException | IOException e) {
+            System.err.println("Error finding recent transactions: " + e.getMessage());
+        } finally {
+            recentCache.cancelLoad(load);
+        }
+        return newest.size() > limit ? new ArrayList<>(newest.subList(0, limit)) : newest;
     }
-    //gets a limited number of recent transactions for an account
-    public List<Transaction> findRecentTransactions(String accountNumber, int limit) {
+    //counters of the recent transaction cache
+    public static RecentTransactionCache.CacheStatistics getRecentCacheStatistics() {
+        return RecentTransactionCache.getInstance().getStatistics();
+    }
+    //gets one page of an account's transactions, newest first; pass null as the token for the first page
+    //and the previous page's next-page token for the ones after it
+    public TransactionPage findPageByAccountNumber(String accountNumber, int pageSize, String pageToken) {
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(accountNumber);
+        return findPage(null, null, false, "", parameters, transaction -> true, pageSize, pageToken);
+    }
+    //gets one page of an account's transactions of one type, newest first
+    public TransactionPage findPageByAccountAndType(String accountNumber, String transactionType,
+                                                    int pageSize, String pageToken) {
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(accountNumber);
+        parameters.add(transactionType);
+        return findPage(null, null, true, "", parameters,
+                        transaction -> transaction.getTransactionType().equals(transactionType), pageSize, pageToken);
+    }
+    //gets one page of an account's transactions between two dates, newest first
+    public TransactionPage findPageByAccountAndDateRange(String accountNumber, LocalDateTime startDate,
+                                                         LocalDateTime endDate, int pageSize, String pageToken) {
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(accountNumber);
+        parameters.add(Timestamp.valueOf(startDate));
+        parameters.add(Timestamp.valueOf(endDate));
+        return findPage(startDate, endDate, false, "AND transaction_timestamp BETWEEN ? AND ? ",
+                        parameters, between(startDate, endDate), pageSize, pageToken);
+    }
+    //runs a page query: seeks past the token's row if there is one, starting in that row's partition, and reads
+    //one row more than the page to find out whether another page follows
+    private TransactionPage findPage(LocalDateTime from, LocalDateTime to, boolean byType, String condition,
+                                     List<Object> parameters, Predicate<Transaction> filter, int pageSize,
+                                     String pageToken) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        if (pageToken != null) {
+            PageToken after = PageToken.decode(pageToken);
+            condition += AFTER_PAGE_TOKEN;
+            parameters.add(after.timestamp);
+            parameters.add(after.timestamp);
+            parameters.add(after.transactionId);
+            LocalDateTime afterTime = after.timestamp.toLocalDateTime();
+            to = to == null || afterTime.isBefore(to) ? afterTime : to;
+            filter = filter.and(after::precedes);
+        }
+
+        List<Transaction> transactions = findInPartitions(partitionDAO.partitionsOverlapping(from, to), byType,
+                                                          condition, parameters, filter, pageSize + 1,
+                                                          "Error finding transaction page");
+
+        if (transactions.size() <= pageSize) {
+            return new TransactionPage(transactions, null);
+        }
+        transactions.remove(pageSize);
+        Transaction last = transactions.get(pageSize - 1);
+        String nextPageToken = new PageToken(Timestamp.valueOf(last.getTimestamp()), last.getTransactionId()).encode();
+        return new TransactionPage(transactions, nextPageToken);
+    }
+    //runs an account query (account_number = ?, plus transaction_type = ? when byType, plus condition) against
+    //each partition in turn, newest first, and stops once limit rows are read (0 for no limit); every partition
+    //returns its rows newest first from its own index, so the combined list is newest first as well.
+    //Archived partitions are read from their segment instead, where the account's rows are already newest
+    //first and filter stands in for the SQL condition
+    private List<Transaction> findInPartitions(List<TransactionPartitionDAO.Partition> partitions, boolean byType,
+                                               String condition, List<Object> parameters,
+                                               Predicate<Transaction> filter, int limit, String errorMessage) {
         List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE account_number = ? " +
-                     "ORDER BY transaction_timestamp DESC LIMIT ?";
-        
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, accountNumber);
-            pstmt.setInt(2, limit);
-            
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                transactions.add(createTransactionFromResultSet(rs));
-            }
-            
-        } catch (SQLException e) {
-            System.err.println("Error finding recent transactions: " + e.getMessage());
+        try {
+            readPartitions(transactions, partitions, byType, condition, parameters, filter, limit);
+        } catch (SQLException | IOException e) {
+            System.err.println(errorMessage + ": " + e.getMessage());
         }
         
         return transactions;
     }
-    //retrieves total deposits and withdrawals for an account
-    public double getTotalDeposits(String accountNumber) {
-        String sql = "SELECT SUM(amount) FROM transactions " +
-                     "WHERE account_number = ? AND transaction_type = 'DEPOSIT'";
+    //findInPartitions without the error handling, adding the rows to transactions
+    private void readPartitions(List<Transaction> transactions, List<TransactionPartitionDAO.Partition> partitions,
+                                boolean byType, String condition, List<Object> parameters,
+                                Predicate<Transaction> filter, int limit) throws SQLException, IOException {
+        String accountNumber = (String) parameters.get(0);
         
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, accountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getDouble(1);
+        try (Connection conn = dbManager.getConnection()) {
+            for (TransactionPartitionDAO.Partition partition : partitions) {
+                if (partition.isArchived()) {
+                    partition.segment().scanAccount(accountNumber, transaction -> {
+                        if (filter.test(transaction)) {
+                            transactions.add(transaction);
+                        }
+                        return limit <= 0 || transactions.size() < limit;
+                    });
+                    if (limit > 0 && transactions.size() >= limit) {
+                        break;
+                    }
+                    continue;
+                }
+                String sql = "SELECT * FROM " + partition.getTableName() +
+                             " USE INDEX (" + (byType ? partition.typeIndex() : partition.recentIndex()) + ") " +
+                             "WHERE account_number = ? " + (byType ? "AND transaction_type = ? " : "") + condition +
+                             (byType ? NEWEST_FIRST_BY_TYPE : NEWEST_FIRST) + (limit > 0 ? " LIMIT ?" : "");
+                
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < parameters.size(); i++) {
+                        pstmt.setObject(i + 1, parameters.get(i));
+                    }
+                    if (limit > 0) {
+                        pstmt.setInt(parameters.size() + 1, limit - transactions.size());
+                    }
+                    ResultSet rs = pstmt.executeQuery();
+                    
+                    while (rs.next()) {
+                        transactions.add(createTransactionFromResultSet(rs));
+                    }
+                }
+                if (limit > 0 && transactions.size() >= limit) {
+                    break;
+                }
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error calculating total deposits: " + e.getMessage());
         }
-        
-        return 0.0;
     }
-    
-    public double getTotalWithdrawals(String accountNumber) {
-        String sql = "SELECT SUM(amount) FROM transactions " +
-                     "WHERE account_number = ? AND transaction_type = 'WITHDRAWAL'";
+    //the account's latest transaction posted before the given time, or null if there is none
+    public Transaction findLastBefore(String accountNumber, LocalDateTime before) {
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(accountNumber);
+        parameters.add(Timestamp.valueOf(before));
+        List<Transaction> last = findInPartitions(partitionDAO.partitionsOverlapping(null, before), false,
+                                                  "AND transaction_timestamp < ? ", parameters,
+                                                  transaction -> transaction.getTimestamp().isBefore(before), 1,
+                                                  "Error finding last transaction");
+        return last.isEmpty() ? null : last.get(0);
+    }
+    //streams an account's transactions between two dates, inclusive, oldest first without building a list,
+    //and returns how many were passed to the action, or -1 if the ledger could not be read to the end; each
+    //partition is read in order on its own and archived months are read backwards through their segment
+    public int forEachInRange(String accountNumber, LocalDateTime startDate, LocalDateTime endDate,
+                              Consumer<Transaction> action) {
+        List<TransactionPartitionDAO.Partition> partitions =
+            new ArrayList<>(partitionDAO.partitionsOverlapping(startDate, endDate));
+        Collections.reverse(partitions);
+        Predicate<Transaction> inRange = between(startDate, endDate);
+        int count = 0;
         
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, accountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getDouble(1);
+        try (Connection conn = dbManager.getConnection()) {
+            dbManager.setLazyQueryExecution(conn, true);
+            try {
+                for (TransactionPartitionDAO.Partition partition : partitions) {
+                    if (partition.isArchived()) {
+                        int[] read = new int[1];
+                        partition.segment().scanAccount(accountNumber, true, transaction -> {
+                            if (transaction.getTimestamp().isAfter(endDate)) {
+                                return false;
+                            }
+                            if (inRange.test(transaction)) {
+                                action.accept(transaction);
+                                read[0]++;
+                            }
+                            return true;
+                        });
+                        count += read[0];
+                        continue;
+                    }
+                    //the _recent index finds the rows; H2 only sorts the one account's rows for the month
+                    String sql = "SELECT * FROM " + partition.getTableName() +
+                                 " USE INDEX (" + partition.recentIndex() + ") " +
+                                 "WHERE account_number = ? AND transaction_timestamp BETWEEN ? AND ? " +
+                                 "ORDER BY account_number, transaction_timestamp, transaction_id";
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setFetchSize(DEFAULT_FETCH_SIZE);
+                        pstmt.setString(1, accountNumber);
+                        pstmt.setTimestamp(2, Timestamp.valueOf(startDate));
+                        pstmt.setTimestamp(3, Timestamp.valueOf(endDate));
+                        ResultSet rs = pstmt.executeQuery();
+                        
+                        while (rs.next()) {
+                            action.accept(createTransactionFromResultSet(rs));
+                            count++;
+                        }
+                    }
+                }
+            } finally {
+                dbManager.setLazyQueryExecution(conn, false);
             }
             
-        } catch (SQLException e) {
-            System.err.println("Error calculating total withdrawals: " + e.getMessage());
+        } catch (SQLException | IOException e) {
+            System.err.println("Error streaming transactions by date range: " + e.getMessage());
+            return -1;
         }
         
-        return 0.0;
+        return count;
+    }
+    //matches transactions posted between from and to, inclusive, like SQL BETWEEN
+    private static Predicate<Transaction> between(LocalDateTime from, LocalDateTime to) {
+        return transaction -> !transaction.getTimestamp().isBefore(from) && !transaction.getTimestamp().isAfter(to);
+    }
+    //the time encoded in a generated transaction id, or null for ids made some other way
+    private static LocalDateTime issuedAt(String transactionId) {
+        String prefix = TransactionIdGenerator.PREFIX;
+        if (transactionId == null || !transactionId.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            long id = Long.parseLong(transactionId.substring(prefix.length()));
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(TransactionIdGenerator.timestampOf(id)),
+                                           ZoneId.systemDefault());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    //retrieves total deposits and withdrawals for an account from its running totals in account_summary
+    public long getTotalDepositsCents(String accountNumber) {
+        return summaryDAO.getTotalCents(accountNumber, "DEPOSIT");
+    }
+    
+    public long getTotalWithdrawalsCents(String accountNumber) {
+        return summaryDAO.getTotalCents(accountNumber, "WITHDRAWAL");
     }
     //returns the total number of transactions for a specific account
     public int getTransactionCount(String accountNumber) {
-        String sql = "SELECT COUNT(*) FROM transactions WHERE account_number = ?";
-        
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, accountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-            
-        } catch (SQLException e) {
-            System.err.println("Error counting transactions: " + e.getMessage());
-        }
-        
-        return 0;
+        return summaryDAO.getTransactionCount(accountNumber);
     }
-    //retrieves all transactions
+    //retrieves all transactions, archived ones included, newest first
     public List<Transaction> findAll() {
         List<Transaction> transactions = new ArrayList<>();
         String sql = "SELECT * FROM transactions ORDER BY transaction_timestamp DESC";
@@ -235,38 +509,156 @@ public class TransactionDAO {
                 transactions.add(createTransactionFromResultSet(rs));
             }
             
-        } catch (SQLException e) {
+            boolean anyArchived = false;
+            for (TransactionPartitionDAO.Partition partition : partitionDAO.findAll()) {
+                if (partition.isArchived()) {
+                    partition.segment().scanAll(transactions::add);
+                    anyArchived = true;
+                }
+            }
+            if (anyArchived) {
+                transactions.sort(Comparator.comparing(Transaction::getTimestamp).reversed());
+            }
+            
+        } catch (SQLException | IOException e) {
             System.err.println("Error retrieving all transactions: " + e.getMessage());
         }
         
         return transactions;
     }
+    //streams every transaction to the action in transaction id order without building a list
+    public int forEachTransaction(Consumer<Transaction> action) {
+        return forEachTransaction(DEFAULT_FETCH_SIZE, action);
+    }
+    //streams every transaction with the given fetch size and returns how many were passed to the action
+    //partitions are read one after the other, oldest first, each in transaction id order except archived
+    //ones, which are read in the segment's account order
+    public int forEachTransaction(int fetchSize, Consumer<Transaction> action) {
+        List<TransactionPartitionDAO.Partition> partitions = new ArrayList<>(partitionDAO.findAll());
+        Collections.reverse(partitions);
+        int count = 0;
+        
+        try (Connection conn = dbManager.getConnection()) {
+            dbManager.setLazyQueryExecution(conn, true);
+            try {
+                for (TransactionPartitionDAO.Partition partition : partitions) {
+                    if (partition.isArchived()) {
+                        int[] read = new int[1];
+                        partition.segment().scanAll(transaction -> {
+                            action.accept(transaction);
+                            read[0]++;
+                            return true;
+                        });
+                        count += read[0];
+                        continue;
+                    }
+                    String sql = "SELECT * FROM " + partition.getTableName() + " ORDER BY transaction_id";
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setFetchSize(fetchSize);
+                        ResultSet rs = pstmt.executeQuery();
+                        
+                        while (rs.next()) {
+                            action.accept(createTransactionFromResultSet(rs));
+                            count++;
+                        }
+                    }
+                }
+            } finally {
+                dbManager.setLazyQueryExecution(conn, false);
+            }
+            
+        } catch (SQLException | IOException e) {
+            System.err.println("Error streaming transactions: " + e.getMessage());
+        }
+        
+        return count;
+    }
     //converts a ResultSet row into a Transaction object
     private Transaction createTransactionFromResultSet(ResultSet rs) throws SQLException {
         return new Transaction(
             rs.getString("transaction_id"),
             rs.getString("account_number"),
             rs.getString("transaction_type"),
-            rs.getDouble("amount"),
-            rs.getDouble("balance_after"),
+            Money.fromDecimal(rs.getBigDecimal("amount")),
+            Money.fromDecimal(rs.getBigDecimal("balance_after")),
             rs.getString("description"),
             rs.getTimestamp("transaction_timestamp").toLocalDateTime()
         );
     }
-    //deletes all transactions linked to a specific account number
+    //deletes all transactions linked to a specific account number from every online partition, and their
+    //summaries; archived segments are read-only and keep their rows until the month is dropped
     public boolean deleteByAccountNumber(String accountNumber) {
-        String sql = "DELETE FROM transactions WHERE account_number = ?";
-        
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, accountNumber);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int rowsAffected = 0;
+                for (TransactionPartitionDAO.Partition partition : partitionDAO.findOnline()) {
+                    String sql = "DELETE FROM " + partition.getTableName() + " WHERE account_number = ?";
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setString(1, accountNumber);
+                        rowsAffected += pstmt.executeUpdate();
+                    }
+                }
+                summaryDAO.deleteByAccountNumber(conn, accountNumber);
+                conn.commit();
+                recentCache.invalidate(accountNumber);
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
             
         } catch (SQLException e) {
             System.err.println("Error deleting transactions: " + e.getMessage());
             return false;
         }
     }
+
+    //one page of transactions and the token for the page after it, null on the last page
+    public static class TransactionPage {
+        private final List<Transaction> transactions;
+        private final String nextPageToken;
+
+        public TransactionPage(List<Transaction> transactions, String nextPageToken) {
+            this.transactions = transactions;
+            this.nextPageToken = nextPageToken;
+        }
+
+        public List<Transaction> getTransactions() { return transactions; }
+        public String getNextPageToken() { return nextPageToken; }
+        public boolean hasNextPage() { return nextPageToken != null; }
+    }
+
+    //the sort key of the last row of a page; callers only see it as an opaque base64 string
+    private static class PageToken {
+        private final Timestamp timestamp;
+        private final String transactionId;
+
+        PageToken(Timestamp timestamp, String transactionId) {
+            this.timestamp = timestamp;
+            this.transactionId = transactionId;
+        }
+
+        //whether a transaction sorts after this row, newest first, and so belongs on a later page
+        boolean precedes(Transaction transaction) {
+            int byTime = Timestamp.valueOf(transaction.getTimestamp()).compareTo(timestamp);
+            return byTime < 0 || (byTime == 0 && transaction.getTransactionId().compareTo(transactionId) < 0);
+        }
+
+        String encode() {
+            String key = timestamp.toLocalDateTime() + "|" + transactionId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static PageToken decode(String token) {
+            try {
+                String key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = key.indexOf('|');
+                return new PageToken(Timestamp.valueOf(LocalDateTime.parse(key.substring(0, separator))),
+                                     key.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid page token: " + token, e);
+            }
+        }
+    }
 }
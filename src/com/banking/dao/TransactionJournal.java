@@ -0,0 +1,150 @@
+package com.banking.dao;
+
+import com.banking.database.DatabaseManager;
+import com.banking.model.Transaction;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+//queues transactions in memory and writes them in batches, committing each batch once (group commit)
+public class TransactionJournal {
+    private final DatabaseManager dbManager;
+    private final TransactionDAO transactionDAO;
+    private final BlockingQueue<PendingTransaction> queue = new LinkedBlockingQueue<>();
+    private final long flushIntervalMillis;
+    private final int batchSize;
+    private final Thread flusher;
+    //append and shutdown both hold it, so nothing can be queued once shutdown has started its final drain
+    private final Object stateLock = new Object();
+    private volatile boolean running = true;
+
+    //starts the background thread that flushes the queue every flushIntervalMillis or once batchSize is reached
+    public TransactionJournal(TransactionDAO transactionDAO, long flushIntervalMillis, int batchSize) {
+        if (flushIntervalMillis <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Flush interval and batch size must be positive");
+        }
+        this.dbManager = DatabaseManager.getInstance();
+        this.transactionDAO = transactionDAO;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.batchSize = batchSize;
+        this.flusher = new Thread(this::flushLoop, "transaction-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+    //queues a transaction; the future completes with true once it is committed, false if it could not be written.
+    //Returns null if the journal has been shut down, and then the caller has to write the transaction itself
+    public CompletableFuture<Boolean> append(Transaction transaction) {
+        PendingTransaction pending = new PendingTransaction(transaction);
+        synchronized (stateLock) {
+            if (!running) {
+                return null;
+            }
+            queue.add(pending);
+        }
+        return pending.done;
+    }
+    //number of transactions waiting to be written
+    public int getPendingCount() {
+        return queue.size();
+    }
+    //stops accepting work and writes everything still queued before returning
+    public void shutdown() {
+        synchronized (stateLock) {
+            running = false;
+        }
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingTransaction> batch = new ArrayList<>();
+        try {
+            while (queue.drainTo(batch, batchSize) > 0) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        } finally {
+            //only reached with work left if a batch threw; nobody may be left waiting on a future
+            batch.addAll(queue);
+            queue.clear();
+            for (PendingTransaction pending : batch) {
+                pending.done.complete(false);
+            }
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingTransaction> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                //waits for the first transaction, then gives others the rest of the interval to join the batch
+                PendingTransaction first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingTransaction next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                //shutdown() drains whatever is left
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+    //writes the batch in one database transaction; if that fails each row is retried on its own
+    //so one bad transaction does not lose the others
+    private void writeBatch(List<PendingTransaction> batch) {
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Transaction> transactions = new ArrayList<>(batch.size());
+                for (PendingTransaction pending : batch) {
+                    transactions.add(pending.transaction);
+                }
+                transactionDAO.insertBatch(conn, transactions);
+                conn.commit();
+                RecentTransactionCache.getInstance().addAll(transactions);
+                for (PendingTransaction pending : batch) {
+                    pending.done.complete(true);
+                }
+                return;
+            } catch (SQLException e) {
+                conn.rollback();
+                System.err.println("Error writing transaction batch, retrying individually: " + e.getMessage());
+            }
+        } catch (SQLException e) {
+            System.err.println("Error writing transaction batch, retrying individually: " + e.getMessage());
+        }
+
+        for (PendingTransaction pending : batch) {
+            pending.done.complete(transactionDAO.saveNow(pending.transaction));
+        }
+    }
+
+    //a queued transaction and the acknowledgement its caller can wait on
+    private static class PendingTransaction {
+        private final Transaction transaction;
+        private final CompletableFuture<Boolean> done = new CompletableFuture<>();
+
+        PendingTransaction(Transaction transaction) {
+            this.transaction = transaction;
+        }
+    }
+}
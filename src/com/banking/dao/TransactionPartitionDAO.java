@@ -0,0 +1,382 @@
+package com.banking.dao;
+
+import com.banking.database.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//the transaction ledger is split into one table per month (transactions_yyyymm) listed in transaction_partitions;
+//the transactions view is the union of all online partitions for queries that need the whole ledger,
+//while TransactionDAO routes writes and account queries straight to the partitions that can hold the rows;
+//months older than the archive age are moved out of H2 into read-only ArchiveSegment files
+public class TransactionPartitionDAO {
+    public static final String VIEW = "transactions";
+    public static final String PARTITION_PREFIX = "transactions_";
+    //rows written before partitioning stay in this partition, which covers everything up to its newest row
+    public static final String DEFAULT_PARTITION = "transactions_default";
+    //how long a loaded partition list is trusted before it is read again, to see partitions made by other instances
+    private static final long CATALOGUE_REFRESH_MS = 1000;
+    //months whose partitions are older than this many months are archived by archiveColdPartitions()
+    public static final String ARCHIVE_MONTHS_PROPERTY = "banking.archive.months";
+    public static final int DEFAULT_ARCHIVE_MONTHS = 12;
+    //directory archive segments are written to, relative to the working directory unless absolute
+    public static final String ARCHIVE_DIR_PROPERTY = "banking.archive.dir";
+    public static final String DEFAULT_ARCHIVE_DIR = "archive";
+    public static final String SEGMENT_SUFFIX = ".seg";
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static volatile Catalogue catalogue;
+    //partition DDL from this process is done one change at a time
+    private static final Object ddlLock = new Object();
+
+    private DatabaseManager dbManager;
+
+    public TransactionPartitionDAO() {
+        //sets up connection to the databse
+        this.dbManager = DatabaseManager.getInstance();
+    }
+    //returns the partition table for a transaction posted at the given time, creating it if this is the
+    //month's first transaction; the following month is created one month early so month end never waits on DDL
+    String tableFor(LocalDateTime timestamp) throws SQLException {
+        YearMonth month = YearMonth.from(timestamp);
+        String table = tableName(month);
+        Catalogue current = catalogue();
+        Partition partition = current.byName.get(table);
+        if (partition == null) {
+            current = reload();
+            partition = current.byName.get(table);
+        }
+        if (partition == null) {
+            ensurePartition(month);
+        } else if (partition.isArchived()) {
+            throw new SQLException("Transactions for " + month + " are archived and can no longer be written");
+        }
+        YearMonth next = month.plusMonths(1);
+        if (!month.isBefore(YearMonth.now()) && !current.byName.containsKey(tableName(next))) {
+            ensurePartition(next);
+        }
+        return table;
+    }
+    //partitions, online or archived, holding rows between from and to (inclusive; null means unbounded), newest first
+    List<Partition> partitionsOverlapping(LocalDateTime from, LocalDateTime to) {
+        List<Partition> overlapping = new ArrayList<>();
+        for (Partition partition : catalogue().newestFirst) {
+            if ((to == null || !partition.rangeStart.isAfter(to)) && (from == null || partition.rangeEnd.isAfter(from))) {
+                overlapping.add(partition);
+            }
+        }
+        return overlapping;
+    }
+    //all partitions, online and archived, newest first
+    public List<Partition> findAll() {
+        return catalogue().newestFirst;
+    }
+    //the partitions still held in H2, newest first
+    public List<Partition> findOnline() {
+        List<Partition> online = new ArrayList<>();
+        for (Partition partition : catalogue().newestFirst) {
+            if (!partition.isArchived()) {
+                online.add(partition);
+            }
+        }
+        return online;
+    }
+    //creates the partition for a month if it does not exist yet; safe to call from several instances at once
+    public void ensurePartition(YearMonth month) throws SQLException {
+        synchronized (ddlLock) {
+            if (catalogue().byName.containsKey(tableName(month))) {
+                return;
+            }
+            try (Connection conn = dbManager.getConnection()) {
+                createPartition(conn, month);
+                rebuildView(conn);
+            }
+            reload();
+        }
+    }
+    //creates a month's partition table and indexes and lists it in transaction_partitions; the caller holds ddlLock
+    private void createPartition(Connection conn, YearMonth month) throws SQLException {
+        String table = tableName(month);
+        String start = "TIMESTAMP '" + Timestamp.valueOf(month.atDay(1).atStartOfDay()) + "'";
+        String end = "TIMESTAMP '" + Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay()) + "'";
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + table + " (" +
+                         "transaction_id VARCHAR(50) PRIMARY KEY, " +
+                         "account_number VARCHAR(50) NOT NULL, " +
+                         "transaction_type VARCHAR(20) NOT NULL, " +
+                         "amount DECIMAL(15, 2) NOT NULL, " +
+                         "balance_after DECIMAL(15, 2) NOT NULL, " +
+                         "description VARCHAR(255), " +
+                         "transaction_timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                         "FOREIGN KEY (account_number) REFERENCES accounts(account_number), " +
+                         //a row routed to the wrong month is rejected rather than hidden from range queries
+                         "CHECK (transaction_timestamp >= " + start + " AND transaction_timestamp < " + end + ")" +
+                         ")");
+            //the same newest-first indexes as the unpartitioned table had
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + table + "_recent ON " + table +
+                         "(account_number, transaction_timestamp DESC, transaction_id DESC)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + table + "_type ON " + table +
+                         "(account_number, transaction_type, transaction_timestamp DESC, transaction_id DESC, amount)");
+            stmt.execute("MERGE INTO transaction_partitions (table_name, range_start, range_end) KEY (table_name) " +
+                         "VALUES ('" + table + "', " + start + ", " + end + ")");
+        }
+    }
+    //drops a partition and every transaction in it, deleting its segment file if it was archived;
+    //the month that is being written to cannot be dropped
+    public boolean dropPartition(String tableName) {
+        synchronized (ddlLock) {
+            //read inside the lock so an archive that just finished is seen
+            Partition partition = findRemovable(tableName, "dropping");
+            if (partition == null) {
+                return false;
+            }
+
+            try (Connection conn = dbManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("DELETE FROM transaction_partitions WHERE table_name = '" + partition.tableName + "'");
+                if (partition.isArchived()) {
+                    ArchiveSegment.close(partition.archivedTo);
+                    Files.deleteIfExists(partition.archivedTo);
+                } else {
+                    rebuildView(conn);
+                    stmt.execute("DROP TABLE " + partition.tableName);
+                }
+                RecentTransactionCache.getInstance().clear();
+                return true;
+
+            } catch (SQLException | IOException e) {
+                System.err.println("Error dropping partition: " + e.getMessage());
+                return false;
+            } finally {
+                reload();
+            }
+        }
+    }
+    //moves every online partition that ended more than banking.archive.months ago (12 by default) into
+    //segment files under banking.archive.dir and returns how many were archived
+    public int archiveColdPartitions() {
+        return archiveOlderThan(Period.ofMonths(Integer.getInteger(ARCHIVE_MONTHS_PROPERTY, DEFAULT_ARCHIVE_MONTHS)),
+                                Paths.get(System.getProperty(ARCHIVE_DIR_PROPERTY, DEFAULT_ARCHIVE_DIR)));
+    }
+    //archives every online partition whose months all lie more than age in the past into directory,
+    //one <table>.seg file per partition, and returns how many were archived
+    public int archiveOlderThan(Period age, Path directory) {
+        LocalDateTime cutoff = LocalDateTime.now().minus(age);
+        int archived = 0;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            System.err.println("Error creating archive directory: " + e.getMessage());
+            return 0;
+        }
+        for (Partition partition : reload().newestFirst) {
+            if (!partition.isArchived() && !partition.rangeEnd.isAfter(cutoff) &&
+                archivePartition(partition.tableName, directory.resolve(partition.tableName + SEGMENT_SUFFIX))) {
+                archived++;
+            }
+        }
+        return archived;
+    }
+    //writes a partition to a compressed column segment file and then drops its table; the partition stays
+    //listed in transaction_partitions with the file it was archived to, and TransactionDAO reads it from there.
+    //DDL commits as it goes, so if the view or the table cannot be changed the partition is put back online
+    public boolean archivePartition(String tableName, Path file) {
+        Path segmentFile = file.toAbsolutePath();
+
+        synchronized (ddlLock) {
+            //read inside the lock so two archives or an archive and a drop of the same month cannot both proceed
+            Partition partition = findRemovable(tableName, "archiving");
+            if (partition == null) {
+                return false;
+            }
+            if (partition.isArchived()) {
+                System.err.println("Error archiving partition: " + tableName + " is already archived");
+                return false;
+            }
+
+            try (Connection conn = dbManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                //segments are written in the order account queries read them, straight off the _recent index
+                int written;
+                try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + partition.tableName +
+                                                      " USE INDEX (" + partition.recentIndex() + ") ORDER BY " +
+                                                      "account_number, transaction_timestamp DESC, transaction_id DESC")) {
+                    written = ArchiveSegment.write(rs, segmentFile);
+                }
+                //the month is closed, so nothing should have been posted to it while it was being written
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + partition.tableName)) {
+                    rs.next();
+                    if (rs.getInt(1) != written) {
+                        Files.deleteIfExists(segmentFile);
+                        System.err.println("Error archiving partition: " + tableName + " changed while it was archived");
+                        return false;
+                    }
+                }
+
+                //the segment holds every row now, so readers that see archived_to read the same transactions
+                stmt.execute("UPDATE transaction_partitions SET archived_to = '" +
+                             segmentFile.toString().replace("'", "''") +
+                             "' WHERE table_name = '" + partition.tableName + "'");
+                try {
+                    rebuildView(conn);
+                    stmt.execute("DROP TABLE " + partition.tableName);
+                } catch (SQLException e) {
+                    restoreOnline(conn, partition, segmentFile);
+                    throw e;
+                }
+                return true;
+
+            } catch (SQLException | IOException e) {
+                System.err.println("Error archiving partition: " + e.getMessage());
+                return false;
+            } finally {
+                reload();
+            }
+        }
+    }
+    //undoes an archive whose table could not be dropped: the partition is listed and viewed as online again and
+    //its segment file is removed
+    private void restoreOnline(Connection conn, Partition partition, Path segmentFile) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE transaction_partitions SET archived_to = NULL " +
+                         "WHERE table_name = '" + partition.tableName + "'");
+            rebuildView(conn);
+            ArchiveSegment.close(segmentFile);
+            Files.deleteIfExists(segmentFile);
+        } catch (SQLException | IOException e) {
+            System.err.println("Error putting partition " + partition.tableName + " back online: " + e.getMessage());
+        }
+    }
+    //the named partition if it exists and its month has ended
+    private Partition findRemovable(String tableName, String action) {
+        Partition partition = reload().byName.get(tableName.toLowerCase());
+        if (partition == null) {
+            System.err.println("Error " + action + " partition: no partition " + tableName);
+            return null;
+        }
+        if (partition.rangeEnd.isAfter(LocalDateTime.now())) {
+            System.err.println("Error " + action + " partition: " + tableName + " is still being written to");
+            return null;
+        }
+        return partition;
+    }
+    //points the transactions view at the online partitions listed in the catalogue
+    private void rebuildView(Connection conn) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT table_name FROM transaction_partitions " +
+                                              "WHERE archived_to IS NULL ORDER BY range_start")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        if (tables.isEmpty()) {
+            //a view needs at least one table, so the current month's partition is made now rather than by the
+            //next posting
+            createPartition(conn, YearMonth.now());
+            tables.add(tableName(YearMonth.now()));
+        }
+
+        StringBuilder sql = new StringBuilder("CREATE OR REPLACE VIEW " + VIEW + " AS ");
+        for (int i = 0; i < tables.size(); i++) {
+            sql.append(i == 0 ? "" : " UNION ALL ").append("SELECT * FROM ").append(tables.get(i));
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql.toString());
+        }
+    }
+
+    private Catalogue catalogue() {
+        Catalogue current = catalogue;
+        if (current == null || System.currentTimeMillis() - current.loadedAt > CATALOGUE_REFRESH_MS) {
+            current = reload();
+        }
+        return current;
+    }
+    //reads the partition list; keeps the previous list if the catalogue cannot be read
+    private Catalogue reload() {
+        String sql = "SELECT table_name, range_start, range_end, archived_to FROM transaction_partitions " +
+                     "ORDER BY range_start DESC, range_end DESC";
+        List<Partition> partitions = new ArrayList<>();
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                partitions.add(new Partition(rs.getString(1).toLowerCase(),
+                                             rs.getTimestamp(2).toLocalDateTime(),
+                                             rs.getTimestamp(3).toLocalDateTime(),
+                                             rs.getString(4) == null ? null : Paths.get(rs.getString(4))));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error reading transaction partitions: " + e.getMessage());
+            if (catalogue != null) {
+                return catalogue;
+            }
+        }
+
+        Catalogue loaded = new Catalogue(partitions);
+        catalogue = loaded;
+        return loaded;
+    }
+
+    public static String tableName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(MONTH_SUFFIX);
+    }
+
+    //one partition table and the timestamps it covers: [rangeStart, rangeEnd); archivedTo is the segment file
+    //holding its rows once it has been archived, null while it is online
+    public static class Partition {
+        private final String tableName;
+        private final LocalDateTime rangeStart;
+        private final LocalDateTime rangeEnd;
+        private final Path archivedTo;
+
+        Partition(String tableName, LocalDateTime rangeStart, LocalDateTime rangeEnd, Path archivedTo) {
+            this.tableName = tableName;
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            this.archivedTo = archivedTo;
+        }
+
+        public String getTableName() { return tableName; }
+        public LocalDateTime getRangeStart() { return rangeStart; }
+        public LocalDateTime getRangeEnd() { return rangeEnd; }
+        public Path getArchivedTo() { return archivedTo; }
+        public boolean isArchived() { return archivedTo != null; }
+        //the segment holding an archived partition's rows
+        ArchiveSegment segment() throws IOException { return ArchiveSegment.open(archivedTo); }
+        //index names follow the table so queries can name the index they need
+        String recentIndex() { return tableName + "_recent"; }
+        String typeIndex() { return tableName + "_type"; }
+    }
+
+    //the partitions as last read from transaction_partitions
+    private static class Catalogue {
+        private final List<Partition> newestFirst;
+        private final Map<String, Partition> byName = new HashMap<>();
+        private final long loadedAt = System.currentTimeMillis();
+
+        Catalogue(List<Partition> newestFirst) {
+            this.newestFirst = Collections.unmodifiableList(newestFirst);
+            for (Partition partition : newestFirst) {
+                byName.put(partition.tableName, partition);
+            }
+        }
+    }
+}
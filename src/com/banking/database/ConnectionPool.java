@@ -0,0 +1,618 @@
+package com.banking.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//keeps a bounded set of open H2 connections so DAOs do not pay for a new session on every call
+public class ConnectionPool {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    //whether each borrow records its stack so a leak report can say where the connection was taken
+    private final boolean traceLeaks;
+    //prepared statements kept open per connection, 0 turns the cache off
+    private final int statementCacheSize;
+
+    //one permit per connection that may be handed out, so borrowers wait once maxSize are in use
+    private final Semaphore permits;
+    //most recently returned connection sits at the front so hot connections are reused first
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown;
+
+    //counters exposed through getStatistics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong connectionLeaks = new AtomicLong();
+    private final AtomicLong statementLeaks = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicLong statementCacheEvictions = new AtomicLong();
+
+    //creates the pool, opens minSize connections and starts the background housekeeping thread
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis,
+                          boolean traceLeaks, long housekeepingIntervalMillis, int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.traceLeaks = traceLeaks;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        fillToMinimum();
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingIntervalMillis,
+            housekeepingIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    //borrows a connection, waiting up to the borrow timeout when all connections are in use
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis +
+                    " ms waiting for a database connection (" + active.size() + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdleConnection();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+            Connection lease = pooled.lease(traceLeaks && leakThresholdMillis > 0);
+            active.add(pooled);
+            recordWait(System.nanoTime() - start);
+            return lease;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    //pops idle connections until one passes validation, discarding the broken ones
+    private PooledConnection takeValidIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isValid(pooled)) {
+                return pooled;
+            }
+            validationFailures.incrementAndGet();
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        return new PooledConnection(connection);
+    }
+    //called when a borrower closes its connection; cleans it up and puts it back for reuse
+    private void release(PooledConnection pooled) {
+        if (!active.remove(pooled)) {
+            return;
+        }
+        try {
+            int leaked = pooled.closeOpenStatements();
+            if (leaked > 0) {
+                statementLeaks.addAndGet(leaked);
+                System.err.println("Connection pool: closed " + leaked +
+                    " statement(s) left open by the borrower");
+            }
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            if (pooled.lazyQueryExecution) {
+                setLazyQueryExecution(pooled, false);
+            }
+        } catch (SQLException e) {
+            System.err.println("Connection pool: discarding connection after reset failure: " + e.getMessage());
+            discard(pooled);
+            permits.release();
+            return;
+        }
+
+        pooled.markReturned();
+        if (shutdown) {
+            discard(pooled);
+        } else {
+            idle.offerFirst(pooled);
+        }
+        permits.release();
+    }
+
+    //turns H2 lazy query execution on or off for a borrowed connection; the pool remembers it so a connection
+    //returned with it still on is switched back before the next borrower gets it
+    public void setLazyQueryExecution(Connection conn, boolean enabled) throws SQLException {
+        if (!Proxy.isProxyClass(conn.getClass()) || !(Proxy.getInvocationHandler(conn) instanceof Lease)) {
+            throw new SQLException("Not a connection from this pool");
+        }
+        Lease lease = (Lease) Proxy.getInvocationHandler(conn);
+        if (lease.closed) {
+            throw new SQLException("Connection has already been returned to the pool");
+        }
+        setLazyQueryExecution(lease.pooled, enabled);
+    }
+
+    private void setLazyQueryExecution(PooledConnection pooled, boolean enabled) throws SQLException {
+        try (Statement stmt = pooled.connection.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION " + (enabled ? "TRUE" : "FALSE"));
+        }
+        pooled.lazyQueryExecution = enabled;
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            System.err.println("Connection pool: error closing connection: " + e.getMessage());
+        }
+    }
+    //periodic task: evicts long-idle connections, tops the pool back up and reports leaks
+    private void housekeep() {
+        try {
+            evictIdleConnections();
+            fillToMinimum();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            System.err.println("Connection pool housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && totalConnections.get() > minSize) {
+            PooledConnection pooled = oldestFirst.next();
+            if (now - pooled.lastReturnedAt > idleTimeoutMillis && idle.remove(pooled)) {
+                discard(pooled);
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!shutdown && totalConnections.get() < minSize) {
+            try {
+                PooledConnection pooled = openConnection();
+                pooled.markReturned();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                System.err.println("Connection pool: could not open connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakThresholdMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : active) {
+            if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdMillis) {
+                pooled.leakReported = true;
+                connectionLeaks.incrementAndGet();
+                System.err.println("Connection pool: connection held for " + (now - pooled.borrowedAt) +
+                    " ms without being closed, possible leak");
+                if (pooled.borrowSite != null) {
+                    pooled.borrowSite.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+    //closes idle connections now and active ones as they are returned
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+    //returns a snapshot of the pool counters
+    public PoolStatistics getStatistics() {
+        long borrows = borrowCount.get();
+        return new PoolStatistics(
+            active.size(),
+            idle.size(),
+            totalConnections.get(),
+            maxSize,
+            borrows,
+            borrows == 0 ? 0 : totalWaitNanos.get() / borrows / 1000,
+            maxWaitNanos.get() / 1000,
+            timeoutCount.get(),
+            validationFailures.get(),
+            connectionLeaks.get(),
+            statementLeaks.get(),
+            statementCacheHits.get(),
+            statementCacheMisses.get(),
+            statementCacheEvictions.get()
+        );
+    }
+
+    //wraps a real connection that stays open for the lifetime of the pool
+    private class PooledConnection {
+        private final Connection connection;
+        private final Set<Statement> openStatements = ConcurrentHashMap.newKeySet();
+        //statements keyed by SQL text in least-recently-used order; closing the eldest keeps the size bounded
+        private final Map<String, CachedStatement> statementCache =
+            new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() <= statementCacheSize || eldest.getValue().inUse) {
+                        return false;
+                    }
+                    statementCacheEvictions.incrementAndGet();
+                    closeQuietly(eldest.getValue().statement);
+                    return true;
+                }
+            };
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt;
+        private volatile boolean leakReported;
+        private volatile Throwable borrowSite;
+        //set while the borrower has lazy query execution switched on
+        private volatile boolean lazyQueryExecution;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+        //hands out a fresh proxy per borrow so a stale reference cannot close someone else's lease
+        Connection lease(boolean captureBorrowSite) {
+            borrowedAt = System.currentTimeMillis();
+            leakReported = false;
+            borrowSite = captureBorrowSite ? new Throwable("Connection borrowed here") : null;
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new Lease(this));
+        }
+
+        void markReturned() {
+            borrowSite = null;
+            lastReturnedAt = System.currentTimeMillis();
+        }
+        //closes statements (and with them their result sets) the borrower forgot about
+        int closeOpenStatements() {
+            int leaked = 0;
+            for (Statement statement : openStatements) {
+                try {
+                    if (!statement.isClosed()) {
+                        leaked++;
+                        statement.close();
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Connection pool: error closing statement: " + e.getMessage());
+                }
+            }
+            openStatements.clear();
+            synchronized (statementCache) {
+                for (CachedStatement cached : statementCache.values()) {
+                    if (cached.inUse) {
+                        leaked++;
+                        cached.checkIn();
+                    }
+                }
+            }
+            return leaked;
+        }
+        //returns the cached statement for this SQL, preparing it on a miss
+        PreparedStatement checkOutCached(String sql, Connection owner) throws SQLException {
+            synchronized (statementCache) {
+                CachedStatement cached = statementCache.get(sql);
+                if (cached == null) {
+                    statementCacheMisses.incrementAndGet();
+                    cached = new CachedStatement(connection.prepareStatement(sql));
+                    statementCache.put(sql, cached);
+                } else if (cached.inUse) {
+                    //same SQL is already open on this connection, e.g. a nested query
+                    return null;
+                } else {
+                    statementCacheHits.incrementAndGet();
+                }
+                cached.inUse = true;
+                return cached.checkOut(owner);
+            }
+        }
+    }
+
+    //a prepared statement that stays open across borrows; callers get a proxy whose close() only checks it back in
+    private class CachedStatement {
+        private final PreparedStatement statement;
+        //the driver's settings before a borrower first changed them; H2 reads and writes the query timeout
+        //through the session, so they are only read, and put back, once a borrower has changed one
+        private int defaultFetchSize;
+        private int defaultMaxRows;
+        private int defaultQueryTimeout;
+        private boolean defaultsKnown;
+        private boolean settingsChanged;
+        private boolean inUse;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement checkOut(Connection owner) {
+            boolean[] closed = { false };
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                (target, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!closed[0]) {
+                                closed[0] = true;
+                                checkIn();
+                            }
+                            return null;
+                        case "isClosed":
+                            return closed[0];
+                        case "getConnection":
+                            return owner;
+                        case "equals":
+                            return target == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(target);
+                        case "setFetchSize":
+                        case "setMaxRows":
+                        case "setQueryTimeout":
+                            if (!closed[0]) {
+                                settingsChanging();
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                    if (closed[0]) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    return invokeOn(statement, method, args);
+                });
+        }
+        //records the settings a borrower is about to change so checkIn can put them back
+        private void settingsChanging() throws SQLException {
+            if (!defaultsKnown) {
+                defaultFetchSize = statement.getFetchSize();
+                defaultMaxRows = statement.getMaxRows();
+                defaultQueryTimeout = statement.getQueryTimeout();
+                defaultsKnown = true;
+            }
+            settingsChanged = true;
+        }
+        //resets the statement so the next borrower starts clean: no open result, parameters or batch, and the
+        //fetch size, row limit and timeout it was prepared with
+        void checkIn() {
+            try {
+                ResultSet rs = statement.getResultSet();
+                if (rs != null) {
+                    rs.close();
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                if (settingsChanged) {
+                    //the row limit first, as H2 refuses a fetch size above it
+                    statement.setMaxRows(defaultMaxRows);
+                    statement.setFetchSize(defaultFetchSize);
+                    statement.setQueryTimeout(defaultQueryTimeout);
+                    settingsChanged = false;
+                }
+            } catch (SQLException e) {
+                System.err.println("Connection pool: error resetting cached statement: " + e.getMessage());
+            }
+            inUse = false;
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Connection pool: error closing statement: " + e.getMessage());
+        }
+    }
+
+    //the connection object a DAO sees; close() returns the underlying connection to the pool
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private volatile boolean closed;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.connection.isClosed();
+                case "equals":
+                    return target == args[0];
+                case "hashCode":
+                    return System.identityHashCode(target);
+                case "toString":
+                    return "Pooled" + pooled.connection;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if (statementCacheSize > 0 && "prepareStatement".equals(method.getName()) && args.length == 1) {
+                PreparedStatement cached = pooled.checkOutCached((String) args[0], (Connection) target);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
+            Object result = invokeOn(pooled.connection, method, args);
+            if (result instanceof Statement) {
+                return trackStatement((Statement) result, method.getReturnType(), (Connection) target);
+            }
+            return result;
+        }
+        //wraps a statement so the pool knows when it has been closed
+        private Object trackStatement(Statement statement, Class<?> statementType, Connection owner) {
+            pooled.openStatements.add(statement);
+            return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { statementType },
+                (target, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            pooled.openStatements.remove(statement);
+                            break;
+                        case "getConnection":
+                            return owner;
+                        case "equals":
+                            return target == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(target);
+                        default:
+                            break;
+                    }
+                    return invokeOn(statement, method, args);
+                });
+        }
+    }
+
+    private static Object invokeOn(Object delegate, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    //point-in-time view of pool usage; wait times are in microseconds
+    public static class PoolStatistics {
+        private final int activeConnections;
+        private final int idleConnections;
+        private final int totalConnections;
+        private final int maxConnections;
+        private final long borrowCount;
+        private final long averageWaitMicros;
+        private final long maxWaitMicros;
+        private final long timeoutCount;
+        private final long validationFailures;
+        private final long connectionLeaks;
+        private final long statementLeaks;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+        private final long statementCacheEvictions;
+
+        public PoolStatistics(int activeConnections, int idleConnections, int totalConnections,
+                              int maxConnections, long borrowCount, long averageWaitMicros,
+                              long maxWaitMicros, long timeoutCount, long validationFailures,
+                              long connectionLeaks, long statementLeaks, long statementCacheHits,
+                              long statementCacheMisses, long statementCacheEvictions) {
+            this.activeConnections = activeConnections;
+            this.idleConnections = idleConnections;
+            this.totalConnections = totalConnections;
+            this.maxConnections = maxConnections;
+            this.borrowCount = borrowCount;
+            this.averageWaitMicros = averageWaitMicros;
+            this.maxWaitMicros = maxWaitMicros;
+            this.timeoutCount = timeoutCount;
+            this.validationFailures = validationFailures;
+            this.connectionLeaks = connectionLeaks;
+            this.statementLeaks = statementLeaks;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+            this.statementCacheEvictions = statementCacheEvictions;
+        }
+
+        public int getActiveConnections() { return activeConnections; }
+        public int getIdleConnections() { return idleConnections; }
+        public int getTotalConnections() { return totalConnections; }
+        public int getMaxConnections() { return maxConnections; }
+        public long getBorrowCount() { return borrowCount; }
+        public long getAverageWaitMicros() { return averageWaitMicros; }
+        public long getMaxWaitMicros() { return maxWaitMicros; }
+        public long getTimeoutCount() { return timeoutCount; }
+        public long getValidationFailures() { return validationFailures; }
+        public long getConnectionLeaks() { return connectionLeaks; }
+        public long getStatementLeaks() { return statementLeaks; }
+        public long getStatementCacheHits() { return statementCacheHits; }
+        public long getStatementCacheMisses() { return statementCacheMisses; }
+        public long getStatementCacheEvictions() { return statementCacheEvictions; }
+
+        @Override
+        public String toString() {
+            return String.format("Pool[Active=%d, Idle=%d, Total=%d/%d, Borrows=%d, AvgWait=%dus, MaxWait=%dus, " +
+                "Timeouts=%d, Leaks=%d/%d, StatementCache=%d hits/%d misses/%d evictions]",
+                activeConnections, idleConnections, totalConnections, maxConnections, borrowCount,
+                averageWaitMicros, maxWaitMicros, timeoutCount, connectionLeaks, statementLeaks,
+                statementCacheHits, statementCacheMisses, statementCacheEvictions);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.banking.database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -12,8 +11,22 @@ public class DatabaseManager {
     private static final String DB_URL = "jdbc:h2:mem:bankingdb;DB_CLOSE_DELAY=-1";
     private static final String DB_USER = "sa";
     private static final String DB_PASSWORD = "";
+    //connection pool settings
+    private static final int POOL_MIN_SIZE = 2;
+    private static final int POOL_MAX_SIZE = 10;
+    private static final long POOL_BORROW_TIMEOUT_MS = 5000;
+    private static final long POOL_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+    private static final long POOL_LEAK_THRESHOLD_MS = 30 * 1000;
+    //set to true to print where each leaked connection was borrowed; it costs a stack trace per borrow,
+    //so it is off unless a leak is being tracked down
+    public static final String POOL_LEAK_TRACE_PROPERTY = "banking.pool.leak.trace";
+    private static final long POOL_HOUSEKEEPING_INTERVAL_MS = 30 * 1000;
+    //prepared statements cached on each pooled connection
+    private static final int STATEMENT_CACHE_SIZE = 64;
     
-    //private constructor to load the database driver
+    private final ConnectionPool connectionPool;
+    
+    //private constructor to load the database driver and open the connection pool
     private DatabaseManager() {
         try {
             Class.forName("org.h2.Driver");
@@ -21,6 +34,10 @@ public class DatabaseManager {
         } catch (ClassNotFoundException e) {
             System.err.println("Database driver not found: " + e.getMessage());
         }
+        this.connectionPool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD,
+            POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS,
+            POOL_LEAK_THRESHOLD_MS, Boolean.getBoolean(POOL_LEAK_TRACE_PROPERTY),
+            POOL_HOUSEKEEPING_INTERVAL_MS, STATEMENT_CACHE_SIZE);
     }
     //returns the single instance of DatabaseManager and creates it if it doesn't exist
     public static synchronized DatabaseManager getInstance() {
@@ -29,65 +46,22 @@ public class DatabaseManager {
         }
         return instance;
     }
-    //opens a new connection to the H2 database
+    //borrows a connection from the pool; closing it returns it to the pool
     public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        return connectionPool.getConnection();
+    }
+    //returns current pool usage (active, idle, wait times, leaks)
+    public ConnectionPool.PoolStatistics getPoolStatistics() {
+        return connectionPool.getStatistics();
+    }
+    //closes all pooled connections, called when the application shuts down
+    public void shutdown() {
+        connectionPool.shutdown();
     }
-    //Starts database intilization by opening a connection
+    //Starts database intilization by opening a connection and applying any pending schema migrations
     public void initializeDatabase() {
-        try (Connection conn = getConnection();
-             //creates a statement object to execute SQL commands
-             Statement stmt = conn.createStatement()) {
-            
-                //creates the users table if it doesn't exist
-            String createUsersTable = 
-                "CREATE TABLE IF NOT EXISTS users (" +
-                "user_id VARCHAR(50) PRIMARY KEY, " +
-                "username VARCHAR(100) NOT NULL, " +
-                "password_hash VARCHAR(255) NOT NULL, " +
-                "role VARCHAR(50) NOT NULL, " +
-                "created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                ")";
-            stmt.execute(createUsersTable);
-          //creates the customers table to store customer information  
-            String createCustomersTable = 
-                "CREATE TABLE IF NOT EXISTS customers (" +
-                "customer_id VARCHAR(50) PRIMARY KEY, " +
-                "first_name VARCHAR(100) NOT NULL, " +
-                "surname VARCHAR(100) NOT NULL, " +
-                "address VARCHAR(255), " +
-                "phone_number VARCHAR(20), " +
-                "email VARCHAR(100), " +
-                "registration_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                ")";
-            stmt.execute(createCustomersTable);
-            //creates accounts table to store bank account information
-            String createAccountsTable = 
-                "CREATE TABLE IF NOT EXISTS accounts (" +
-                "account_number VARCHAR(50) PRIMARY KEY, " +
-                "customer_id VARCHAR(50) NOT NULL, " +
-                "account_type VARCHAR(20) NOT NULL, " +
-                "balance DECIMAL(15, 2) NOT NULL, " +
-                "branch VARCHAR(50), " +
-                "date_opened TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "company_name VARCHAR(200), " +
-                "company_address VARCHAR(255), " +
-                "FOREIGN KEY (customer_id) REFERENCES customers(customer_id)" +
-                ")";
-            stmt.execute(createAccountsTable);
-            //creates transactions table to track all account transactions
-            String createTransactionsTable = 
-                "CREATE TABLE IF NOT EXISTS transactions (" +
-                "transaction_id VARCHAR(50) PRIMARY KEY, " +
-                "account_number VARCHAR(50) NOT NULL, " +
-                "transaction_type VARCHAR(20) NOT NULL, " +
-                "amount DECIMAL(15, 2) NOT NULL, " +
-                "balance_after DECIMAL(15, 2) NOT NULL, " +
-                "description VARCHAR(255), " +
-                "transaction_timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "FOREIGN KEY (account_number) REFERENCES accounts(account_number)" +
-                ")";
-            stmt.execute(createTransactionsTable);
+        try (Connection conn = getConnection()) {
+            new SchemaMigrator().migrate(conn);
             
             System.out.println("Database schema initialized successfully");
             insertDefaultUser(conn);
@@ -120,6 +94,11 @@ public class DatabaseManager {
             System.err.println("Error creating default user: " + e.getMessage());
         }
     }
+    //turns H2 lazy query execution on or off for a pooled connection so large results are read row by row
+    //instead of being built in memory first; the pool switches it back off when the connection is returned
+    public void setLazyQueryExecution(Connection conn, boolean enabled) throws SQLException {
+        connectionPool.setLazyQueryExecution(conn, enabled);
+    }
     //tets if the databse connection can be opened succesfully
     public boolean testConnection() {
         try (Connection conn = getConnection()) {
@@ -0,0 +1,260 @@
+package com.banking.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+//applies numbered schema changes once and records them in the schema_version table
+public class SchemaMigrator {
+    private final List<Migration> migrations = new ArrayList<>();
+
+    public SchemaMigrator() {
+        //version 1: the original tables
+        migrations.add(new Migration(1, "Create core tables",
+            "CREATE TABLE IF NOT EXISTS users (" +
+            "user_id VARCHAR(50) PRIMARY KEY, " +
+            "username VARCHAR(100) NOT NULL, " +
+            "password_hash VARCHAR(255) NOT NULL, " +
+            "role VARCHAR(50) NOT NULL, " +
+            "created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS customers (" +
+            "customer_id VARCHAR(50) PRIMARY KEY, " +
+            "first_name VARCHAR(100) NOT NULL, " +
+            "surname VARCHAR(100) NOT NULL, " +
+            "address VARCHAR(255), " +
+            "phone_number VARCHAR(20), " +
+            "email VARCHAR(100), " +
+            "registration_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS accounts (" +
+            "account_number VARCHAR(50) PRIMARY KEY, " +
+            "customer_id VARCHAR(50) NOT NULL, " +
+            "account_type VARCHAR(20) NOT NULL, " +
+            "balance DECIMAL(15, 2) NOT NULL, " +
+            "branch VARCHAR(50), " +
+            "date_opened TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "company_name VARCHAR(200), " +
+            "company_address VARCHAR(255), " +
+            "FOREIGN KEY (customer_id) REFERENCES customers(customer_id)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS transactions (" +
+            "transaction_id VARCHAR(50) PRIMARY KEY, " +
+            "account_number VARCHAR(50) NOT NULL, " +
+            "transaction_type VARCHAR(20) NOT NULL, " +
+            "amount DECIMAL(15, 2) NOT NULL, " +
+            "balance_after DECIMAL(15, 2) NOT NULL, " +
+            "description VARCHAR(255), " +
+            "transaction_timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "FOREIGN KEY (account_number) REFERENCES accounts(account_number)" +
+            ")"
+        ));
+        //version 2: indexes for the account and transaction lookups the DAOs run
+        migrations.add(new Migration(2, "Add account and transaction lookup indexes",
+            //history, date range and recent-transaction queries
+            "CREATE INDEX IF NOT EXISTS idx_transactions_account_time " +
+            "ON transactions(account_number, transaction_timestamp)",
+            //type filters and the deposit/withdrawal totals, which read amount straight from the index
+            "CREATE INDEX IF NOT EXISTS idx_transactions_account_type " +
+            "ON transactions(account_number, transaction_type, transaction_timestamp, amount)",
+            //accounts of a customer in opening order
+            "CREATE INDEX IF NOT EXISTS idx_accounts_customer " +
+            "ON accounts(customer_id, date_opened)",
+            //account statistics by type
+            "CREATE INDEX IF NOT EXISTS idx_accounts_type ON accounts(account_type)"
+        ));
+        //version 3: row version for optimistic balance updates
+        migrations.add(new Migration(3, "Add account row version",
+            "ALTER TABLE accounts ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL"
+        ));
+        //version 4: which accounts have been paid interest for which month, so a run can be repeated safely
+        migrations.add(new Migration(4, "Add interest posting ledger",
+            "CREATE TABLE IF NOT EXISTS interest_postings (" +
+            "period VARCHAR(7) NOT NULL, " +
+            "account_number VARCHAR(50) NOT NULL, " +
+            "amount DECIMAL(15, 2) NOT NULL, " +
+            "transaction_id VARCHAR(50) NOT NULL, " +
+            "credited BOOLEAN DEFAULT FALSE NOT NULL, " +
+            "posted_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "PRIMARY KEY (period, account_number), " +
+            "FOREIGN KEY (account_number) REFERENCES accounts(account_number)" +
+            ")"
+        ));
+        //version 5: newest-first indexes with the time-ordered transaction id as tie-breaker, so history and
+        //"latest N" queries are index range scans that stop after N rows instead of sorting the whole account
+        migrations.add(new Migration(5, "Order transaction indexes newest first",
+            "DROP INDEX IF EXISTS idx_transactions_account_time",
+            "CREATE INDEX IF NOT EXISTS idx_transactions_account_recent " +
+            "ON transactions(account_number, transaction_timestamp DESC, transaction_id DESC)",
+            "DROP INDEX IF EXISTS idx_transactions_account_type",
+            //amount stays last so the deposit/withdrawal totals are still read from the index alone
+            "CREATE INDEX IF NOT EXISTS idx_transactions_account_type " +
+            "ON transactions(account_number, transaction_type, transaction_timestamp DESC, transaction_id DESC, amount)"
+        ));
+        //version 6: sequences for customer ids and account numbers, starting after any numbers already used
+        migrations.add(new Migration(6, "Add id sequences",
+            "CREATE TABLE IF NOT EXISTS id_sequences (" +
+            "sequence_name VARCHAR(50) PRIMARY KEY, " +
+            "next_value BIGINT NOT NULL" +
+            ")",
+            "INSERT INTO id_sequences (sequence_name, next_value) " +
+            "SELECT 'customer', GREATEST(1000, COALESCE(MAX(" +
+            "CAST(REGEXP_SUBSTR(customer_id, '[0-9]+$') AS BIGINT)) + 1, 0)) FROM customers",
+            "INSERT INTO id_sequences (sequence_name, next_value) " +
+            "SELECT 'account', GREATEST(10000, COALESCE(MAX(" +
+            "CAST(REGEXP_SUBSTR(account_number, '[0-9]+$') AS BIGINT)) + 1, 0)) FROM accounts"
+        ));
+        //version 7: running totals per account and transaction type, filled from the existing ledger
+        migrations.add(new Migration(7, "Add account summaries",
+            "CREATE TABLE IF NOT EXISTS account_summary (" +
+            "account_number VARCHAR(50) NOT NULL, " +
+            "transaction_type VARCHAR(20) NOT NULL, " +
+            "total_amount DECIMAL(15, 2) NOT NULL, " +
+            "transaction_count BIGINT NOT NULL, " +
+            "last_posting TIMESTAMP NOT NULL, " +
+            "PRIMARY KEY (account_number, transaction_type), " +
+            "FOREIGN KEY (account_number) REFERENCES accounts(account_number)" +
+            ")",
+            "INSERT INTO account_summary (account_number, transaction_type, total_amount, " +
+            "transaction_count, last_posting) " +
+            "SELECT account_number, transaction_type, SUM(amount), COUNT(*), MAX(transaction_timestamp) " +
+            "FROM transactions GROUP BY account_number, transaction_type"
+        ));
+        //version 8: monthly transaction partitions; the existing table becomes the default partition holding
+        //everything posted so far, and transactions becomes a view over all partitions
+        migrations.add(new Migration(8, "Partition transactions by month",
+            "CREATE TABLE IF NOT EXISTS transaction_partitions (" +
+            "table_name VARCHAR(64) PRIMARY KEY, " +
+            "range_start TIMESTAMP NOT NULL, " +
+            "range_end TIMESTAMP NOT NULL, " +
+            "archived_to VARCHAR(500), " +
+            "created_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")",
+            "ALTER TABLE transactions RENAME TO transactions_default",
+            "ALTER INDEX idx_transactions_account_recent RENAME TO transactions_default_recent",
+            "ALTER INDEX idx_transactions_account_type RENAME TO transactions_default_type",
+            "INSERT INTO transaction_partitions (table_name, range_start, range_end) " +
+            "SELECT 'transactions_default', TIMESTAMP '1970-01-01 00:00:00', " +
+            "COALESCE(DATEADD(MICROSECOND, 1, MAX(transaction_timestamp)), TIMESTAMP '1970-01-01 00:00:00') " +
+            "FROM transactions_default",
+            "CREATE VIEW transactions AS SELECT * FROM transactions_default"
+        ));
+        //version 9: account-to-account transfers, linking the debit and credit ledger rows under one transfer id
+        migrations.add(new Migration(9, "Add transfers",
+            "CREATE TABLE IF NOT EXISTS transfers (" +
+            "transfer_id VARCHAR(50) PRIMARY KEY, " +
+            "from_account VARCHAR(50) NOT NULL, " +
+            "to_account VARCHAR(50) NOT NULL, " +
+            "amount DECIMAL(15, 2) NOT NULL, " +
+            "debit_transaction_id VARCHAR(50) NOT NULL, " +
+            "credit_transaction_id VARCHAR(50) NOT NULL, " +
+            "transfer_timestamp TIMESTAMP NOT NULL, " +
+            "FOREIGN KEY (from_account) REFERENCES accounts(account_number), " +
+            "FOREIGN KEY (to_account) REFERENCES accounts(account_number)" +
+            ")",
+            "CREATE INDEX IF NOT EXISTS idx_transfers_from ON transfers(from_account, transfer_timestamp)",
+            "CREATE INDEX IF NOT EXISTS idx_transfers_to ON transfers(to_account, transfer_timestamp)"
+        ));
+        //version 10: idempotency keys; a key is written in the same transaction as the posting it belongs to, so a
+        //repeated request finds it and gets the first result back instead of posting again
+        migrations.add(new Migration(10, "Add idempotency keys",
+            "CREATE TABLE IF NOT EXISTS idempotency_keys (" +
+            "idempotency_key VARCHAR(64) PRIMARY KEY, " +
+            "request_type VARCHAR(20) NOT NULL, " +
+            "account_number VARCHAR(50) NOT NULL, " +
+            "to_account VARCHAR(50), " +
+            "amount DECIMAL(15, 2) NOT NULL, " +
+            "balance DECIMAL(15, 2) NOT NULL, " +
+            "to_balance DECIMAL(15, 2), " +
+            "reference VARCHAR(50) NOT NULL, " +
+            "created_on TIMESTAMP NOT NULL" +
+            ")",
+            "CREATE INDEX IF NOT EXISTS idx_idempotency_created ON idempotency_keys(created_on)"
+        ));
+    }
+    //brings the schema up to the latest version and returns the number of migrations applied
+    public int migrate(Connection conn) throws SQLException {
+        int currentVersion = getCurrentVersion(conn);
+        int latestVersion = migrations.get(migrations.size() - 1).version;
+        if (currentVersion >= latestVersion) {
+            System.out.println("Database schema is current (version " + currentVersion + ")");
+            return 0;
+        }
+
+        int applied = 0;
+        for (Migration migration : migrations) {
+            if (migration.version > currentVersion) {
+                apply(conn, migration);
+                applied++;
+            }
+        }
+        System.out.println("Database schema migrated from version " + currentVersion +
+            " to " + latestVersion);
+        return applied;
+    }
+    //reads the highest applied version, creating the schema_version table on first start
+    private int getCurrentVersion(Connection conn) throws SQLException {
+        String tableExistsSQL = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES " +
+                                "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'SCHEMA_VERSION'";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(tableExistsSQL)) {
+            rs.next();
+            if (rs.getInt(1) == 0) {
+                stmt.execute("CREATE TABLE schema_version (" +
+                             "version INT PRIMARY KEY, " +
+                             "description VARCHAR(200) NOT NULL, " +
+                             "applied_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                             ")");
+                return 0;
+            }
+        }
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+    //runs one migration and records it, rolling back the version row if a statement fails
+    private void apply(Connection conn, Migration migration) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement record = conn.prepareStatement(
+                 "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            for (String sql : migration.statements) {
+                stmt.execute(sql);
+            }
+            record.setInt(1, migration.version);
+            record.setString(2, migration.description);
+            record.executeUpdate();
+            conn.commit();
+            System.out.println("Applied schema migration " + migration.version + ": " + migration.description);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Schema migration " + migration.version + " failed: " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    //one numbered schema change made of one or more SQL statements
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final String[] statements;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.banking.interfaces;
+//hands out unique numbers from named sequences, used for customer ids and account numbers
+public interface IdAllocator {
+    String CUSTOMER_SEQUENCE = "customer";
+    String ACCOUNT_SEQUENCE = "account";
+    //returns the next unused value of the sequence; values are unique but may have gaps
+    long nextId(String sequenceName);
+}
@@ -0,0 +1,7 @@
+package com.banking.interfaces;
+//receives progress updates from the monthly interest run
+public interface InterestProgressListener {
+    //called after each chunk is committed with the chunk's last account number and the running totals;
+    //chunks may finish out of order when several workers are used
+    void chunkCompleted(String lastAccountNumber, int accountsProcessed, double totalInterest);
+}
@@ -1,67 +1,96 @@
 package com.banking.model;
 
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 //serves as a template for diffrent account types
 public abstract class Account {
-    //fields common to all account types
+    //how interest is rounded to whole cents, e.g. -Dbanking.interest.rounding=HALF_EVEN; half up by default
+    public static final String INTEREST_ROUNDING_PROPERTY = "banking.interest.rounding";
+    private static final RoundingMode INTEREST_ROUNDING = readInterestRounding();
+
+    //fields common to all account types; amounts are in cents, see Money
     protected String accountNumber;
-    protected double balance;
+    protected long balanceCents;
     protected String branch;
     protected LocalDateTime dateOpened;
     protected Customer customer; 
     protected List<Transaction> transactions;
+    //row version from the database, used to detect concurrent balance changes
+    protected long version;
     
     //constructor sets up the account and ensures account has a customer
-    protected Account(String accountNumber, double initialBalance, String branch, Customer customer) {
+    protected Account(String accountNumber, long initialBalanceCents, String branch, Customer customer) {
         if (customer == null) {
             throw new IllegalArgumentException("Account cannot exist without a customer");
         }
         this.accountNumber = accountNumber;
-        this.balance = initialBalance;
+        this.balanceCents = initialBalanceCents;
         this.branch = branch;
         this.customer = customer;
         this.dateOpened = LocalDateTime.now();
         this.transactions = new ArrayList<>();
     }
     //adds mney to the acoount,record the transaction and returns true if succesful
-    public boolean deposit(double amount) {
-        if (amount <= 0) {
+    public boolean deposit(long amountCents) {
+        if (amountCents <= 0) {
             return false;
         }
-        balance += amount;
-        recordTransaction("DEPOSIT", amount, "Deposit to account");
+        balanceCents = Money.add(balanceCents, amountCents);
+        recordTransaction("DEPOSIT", amountCents, "Deposit to account");
         return true;
     }
     //abstract method for withdrawing money, implemented by subclasses
-    public abstract boolean withdraw(double amount);
-    //abstract method for calculating interest, implemented by subclasses
-    public abstract double calculateInterest();
+    public abstract boolean withdraw(long amountCents);
+    //abstract method for calculating interest in cents, implemented by subclasses
+    public abstract long calculateInterest();
     //applies calculated interest to the account balance and records the transaction
     public void applyInterest() {
-        double interest = calculateInterest();
-        if (interest > 0) {
-            balance += interest;
-            recordTransaction("INTEREST", interest, "Monthly interest applied");
+        long interestCents = calculateInterest();
+        if (interestCents > 0) {
+            balanceCents = Money.add(balanceCents, interestCents);
+            recordTransaction("INTEREST", interestCents, "Monthly interest applied");
+        }
+    }
+    //the rounding used for interest here and in the bulk interest run, so both pay the same cents
+    public static RoundingMode getInterestRounding() {
+        return INTEREST_ROUNDING;
+    }
+    //reads the rounding property once; a bad value must not stop Account from loading, so it falls back to half up.
+    //UNNECESSARY is refused because interest almost never comes out in whole cents
+    private static RoundingMode readInterestRounding() {
+        String value = System.getProperty(INTEREST_ROUNDING_PROPERTY);
+        if (value == null) {
+            return RoundingMode.HALF_UP;
+        }
+        try {
+            RoundingMode mode = RoundingMode.valueOf(value.trim().toUpperCase());
+            if (mode != RoundingMode.UNNECESSARY) {
+                return mode;
+            }
+        } catch (IllegalArgumentException e) {
+            //falls through to the message below
         }
+        System.err.println("Invalid " + INTEREST_ROUNDING_PROPERTY + " '" + value + "', rounding interest HALF_UP");
+        return RoundingMode.HALF_UP;
     }
     //records a transaction in the account's transaction history
-    protected void recordTransaction(String type, double amount, String description) {
+    protected void recordTransaction(String type, long amountCents, String description) {
         Transaction transaction = new Transaction(
             generateTransactionId(),
             this.accountNumber,
             type,
-            amount,
-            balance,
+            amountCents,
+            balanceCents,
             description,
             LocalDateTime.now()
         );
         transactions.add(transaction);
     }
-    //generates a unique transaction id based on timestamp and account number
-    private String generateTransactionId() {
-        return "TXN" + System.currentTimeMillis() + accountNumber.substring(0, 3);
+    //generates a unique, time-ordered transaction id; also used by postings made directly in the database
+    public static String generateTransactionId() {
+        return TransactionIdGenerator.getInstance().nextTransactionId();
     }
     //returns a copy of the account's transaction history
     public List<Transaction> getTransactionHistory() {
@@ -74,12 +103,16 @@ public abstract class Account {
         return accountNumber;
     }
     //getter and setter methods for account fields
+    public long getBalanceCents() {
+        return balanceCents;
+    }
+    //the balance as a double, for display
     public double getBalance() {
-        return balance;
+        return Money.toAmount(balanceCents);
     }
     
-    protected void setBalance(double balance) {
-        this.balance = balance;
+    protected void setBalanceCents(long balanceCents) {
+        this.balanceCents = balanceCents;
     }
     
     public String getBranch() {
@@ -102,14 +135,22 @@ public abstract class Account {
         this.customer = customer;
     }
     
-    protected boolean hasSufficientBalance(double amount) {
-        return balance >= amount;
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
+    protected boolean hasSufficientBalance(long amountCents) {
+        return balanceCents >= amountCents;
     }
     //provides a string representation of the account
     @Override
     public String toString() {
         return String.format("%s[Number=%s, Balance=BWP %.2f, Customer=%s]",
-            getAccountType(), accountNumber, balance, 
+            getAccountType(), accountNumber, getBalance(), 
             customer.getFirstName() + " " + customer.getSurname());
     }
 }
@@ -1,9 +1,12 @@
 package com.banking.model;
 
+import com.banking.interfaces.IdAllocator;
+
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 //represents a bank with customers and accounts
 public class Bank {
@@ -12,16 +15,20 @@ public class Bank {
     
     private Map<String, Customer> customers; 
     private Map<String, Account> accounts; 
-    private int customerCounter;
-    private int accountCounter;
-    //constructor initializes the bank with a name and code
+    private IdAllocator idAllocator;
+    //constructor initializes the bank with a name and code; ids come from counters local to this bank,
+    //which suits a bank that is never saved to the database
     public Bank(String bankName, String bankCode) {
+        this(bankName, bankCode, new LocalIdAllocator());
+    }
+    //ids come from the given allocator, e.g. a SequenceDAO so they are unique across the whole database
+    public Bank(String bankName, String bankCode, IdAllocator idAllocator) {
         this.bankName = bankName;
         this.bankCode = bankCode;
-        this.customers = new HashMap<>();
-        this.accounts = new HashMap<>();
-        this.customerCounter = 1000; 
-        this.accountCounter = 10000; }
+        //several tellers and batch jobs may open accounts at the same time
+        this.customers = new ConcurrentHashMap<>();
+        this.accounts = new ConcurrentHashMap<>();
+        this.idAllocator = idAllocator; }
     //registers a new customer in the bank
     public Customer registerCustomer(String firstName, String surname, String address) {
         String customerId = generateCustomerId();
@@ -30,33 +37,33 @@ public class Bank {
         return customer;
     }
     //opens a new savings account for a customer
-    public SavingsAccount openSavingsAccount(String customerId, double initialBalance, String branch) {
+    public SavingsAccount openSavingsAccount(String customerId, long initialBalanceCents, String branch) {
         Customer customer = getCustomer(customerId);
         if (customer == null) {
             throw new IllegalArgumentException("Customer not found: " + customerId);
         }
         
         String accountNumber = generateAccountNumber();
-        SavingsAccount account = new SavingsAccount(accountNumber, initialBalance, branch, customer);
+        SavingsAccount account = new SavingsAccount(accountNumber, initialBalanceCents, branch, customer);
         customer.addAccount(account);
         accounts.put(accountNumber, account);
         return account;
     }
     //opens a new investment account for a customer
-    public InvestmentAccount openInvestmentAccount(String customerId, double initialBalance, String branch) {
+    public InvestmentAccount openInvestmentAccount(String customerId, long initialBalanceCents, String branch) {
         Customer customer = getCustomer(customerId);
         if (customer == null) {
             throw new IllegalArgumentException("Customer not found: " + customerId);
         }
         
         String accountNumber = generateAccountNumber();
-        InvestmentAccount account = new InvestmentAccount(accountNumber, initialBalance, branch, customer);
+        InvestmentAccount account = new InvestmentAccount(accountNumber, initialBalanceCents, branch, customer);
         customer.addAccount(account);
         accounts.put(accountNumber, account);
         return account;
     }
     //opens a new cheque account for a customer
-    public ChequeAccount openChequeAccount(String customerId, double initialBalance, String branch,
+    public ChequeAccount openChequeAccount(String customerId, long initialBalanceCents, String branch,
                                            String companyName, String companyAddress) {
         Customer customer = getCustomer(customerId);
         if (customer == null) {
@@ -64,7 +71,7 @@ public class Bank {
         }
         
         String accountNumber = generateAccountNumber();
-        ChequeAccount account = new ChequeAccount(accountNumber, initialBalance, branch, 
+        ChequeAccount account = new ChequeAccount(accountNumber, initialBalanceCents, branch, 
                                                    customer, companyName, companyAddress);
         customer.addAccount(account);
         accounts.put(accountNumber, account);
@@ -96,10 +103,10 @@ public class Bank {
     }
     
     private String generateCustomerId() {
-        return String.format("CUST-%04d", customerCounter++);
+        return String.format("CUST-%04d", idAllocator.nextId(IdAllocator.CUSTOMER_SEQUENCE));
     }
      private String generateAccountNumber() {
-        return String.format("%s-%05d", bankCode, accountCounter++);
+        return String.format("%s-%05d", bankCode, idAllocator.nextId(IdAllocator.ACCOUNT_SEQUENCE));
     }
    
     public int getCustomerCount() {
@@ -122,4 +129,15 @@ public class Bank {
         return String.format("Bank[Name=%s, Code=%s, Customers=%d, Accounts=%d]",
             bankName, bankCode, customers.size(), accounts.size());
     }
+
+    //thread-safe in-memory counters with the bank's original starting numbers
+    private static class LocalIdAllocator implements IdAllocator {
+        private final AtomicLong customerCounter = new AtomicLong(1000);
+        private final AtomicLong accountCounter = new AtomicLong(10000);
+
+        @Override
+        public long nextId(String sequenceName) {
+            return (CUSTOMER_SEQUENCE.equals(sequenceName) ? customerCounter : accountCounter).getAndIncrement();
+        }
+    }
 }
@@ -4,9 +4,9 @@ public class ChequeAccount extends Account {
     private String companyName;
     private String companyAddress;
     //constructor initializes the cheque account with necessary details
-    public ChequeAccount(String accountNumber, double initialBalance, String branch, 
+    public ChequeAccount(String accountNumber, long initialBalanceCents, String branch, 
                          Customer customer, String companyName, String companyAddress) {
-        super(accountNumber, initialBalance, branch, customer);
+        super(accountNumber, initialBalanceCents, branch, customer);
         
         if (companyName == null || companyName.trim().isEmpty() ||
             companyAddress == null || companyAddress.trim().isEmpty()) {
@@ -20,40 +20,43 @@ public class ChequeAccount extends Account {
     }
     //withdraws money from the cheque account if sufficient balance exists
     @Override
-    public boolean withdraw(double amount) {
-        if (amount <= 0) {
+    public boolean withdraw(long amountCents) {
+        if (amountCents <= 0) {
             System.out.println("Withdrawal amount must be positive.");
             return false;
         }
         
-        if (!hasSufficientBalance(amount)) {
+        if (!hasSufficientBalance(amountCents)) {
             System.out.println("Insufficient balance for withdrawal.");
             return false;
         }
         
-        balance -= amount;
-        recordTransaction("WITHDRAWAL", amount, "Withdrawal from Cheque Account");
+        balanceCents = Money.subtract(balanceCents, amountCents);
+        recordTransaction("WITHDRAWAL", amountCents, "Withdrawal from Cheque Account");
         return true;
     }
     //checks if the account has enough balance for a withdrawal
     @Override
-    public double calculateInterest() {
-        return 0.0; }
+    public long calculateInterest() {
+        return 0; }
     
     @Override
     public String getAccountType() {
         return "Cheque Account";
     }
     //credits salary to the cheque account and records the transaction
-    public boolean creditSalary(double amount, String employerReference) {
-        if (amount <= 0) {
+    public boolean creditSalary(long amountCents, String employerReference) {
+        if (amountCents <= 0) {
             return false;
         }
-        balance += amount;
-        recordTransaction("SALARY", amount, 
-            String.format("Salary credit from %s (Ref: %s)", companyName, employerReference));
+        balanceCents = Money.add(balanceCents, amountCents);
+        recordTransaction("SALARY", amountCents, salaryDescription(companyName, employerReference));
         return true;
     }
+    //ledger description of a salary credit, shared with the bulk salary run
+    public static String salaryDescription(String companyName, String employerReference) {
+        return String.format("Salary credit from %s (Ref: %s)", companyName, employerReference);
+    }
     //updates the employment information associated with the cheque account
     public void updateEmploymentInfo(String companyName, String companyAddress) {
         if (companyName != null && !companyName.trim().isEmpty()) {
@@ -75,6 +78,6 @@ public class ChequeAccount extends Account {
     @Override
     public String toString() {
         return String.format("ChequeAccount[Number=%s, Balance=BWP %.2f, Employer=%s]",
-            accountNumber, balance, companyName);
+            accountNumber, getBalance(), companyName);
     }
 }
@@ -1,53 +1,57 @@
 package com.banking.model;
 //represents an investment account in the banking system
 public class InvestmentAccount extends Account {
-    private static final double INTEREST_RATE = 0.05; // 5% monthly
-    private static final double MINIMUM_OPENING_BALANCE = 500.00;
+    private static final long MONTHLY_RATE_PPM = 50_000; // 5% monthly
+    private static final long MINIMUM_OPENING_BALANCE_CENTS = 50_000;
     //constructor initializes the investment account with necessary details
-    public InvestmentAccount(String accountNumber, double initialBalance, 
+    public InvestmentAccount(String accountNumber, long initialBalanceCents, 
                              String branch, Customer customer) {
-        super(accountNumber, initialBalance, branch, customer);
+        super(accountNumber, initialBalanceCents, branch, customer);
         
-        if (initialBalance < MINIMUM_OPENING_BALANCE) {
+        if (initialBalanceCents < MINIMUM_OPENING_BALANCE_CENTS) {
             throw new IllegalArgumentException(
-                String.format("Investment Account requires minimum opening balance of BWP %.2f", 
-                MINIMUM_OPENING_BALANCE)
+                "Investment Account requires minimum opening balance of BWP " + 
+                Money.format(MINIMUM_OPENING_BALANCE_CENTS)
             );
         }
     }
     //withdraws money from the investment account if sufficient balance exists
     @Override
-    public boolean withdraw(double amount) {
-        if (amount <= 0) {
+    public boolean withdraw(long amountCents) {
+        if (amountCents <= 0) {
             System.out.println("Withdrawal amount must be positive.");
             return false;
         }
-        if (!hasSufficientBalance(amount)) {
+        if (!hasSufficientBalance(amountCents)) {
             System.out.println("Insufficient balance for withdrawal.");
             return false;
         }
-        balance -= amount;
-        recordTransaction("WITHDRAWAL", amount, "Withdrawal from Investment Account");
+        balanceCents = Money.subtract(balanceCents, amountCents);
+        recordTransaction("WITHDRAWAL", amountCents, "Withdrawal from Investment Account");
         return true;
     }
     //calculates interest based on the current balance
     @Override
-    public double calculateInterest() {
-        return balance * INTEREST_RATE;
+    public long calculateInterest() {
+        return Money.applyRate(balanceCents, MONTHLY_RATE_PPM, getInterestRounding());
     }
     @Override
     public String getAccountType() {
         return "Investment Account";
     }
     public double getInterestRate() {
-        return INTEREST_RATE * 100;
+        return MONTHLY_RATE_PPM * 100.0 / Money.PPM;
     }
-    public static double getMinimumOpeningBalance() {
-        return MINIMUM_OPENING_BALANCE;
+    //monthly rate in parts per million, used by the bulk interest run
+    public static long getMonthlyRatePpm() {
+        return MONTHLY_RATE_PPM;
+    }
+    public static long getMinimumOpeningBalanceCents() {
+        return MINIMUM_OPENING_BALANCE_CENTS;
     }
     @Override
     public String toString() {
         return String.format("InvestmentAccount[Number=%s, Balance=BWP %.2f, Interest=%.1f%%]",
-            accountNumber, balance, getInterestRate());
+            accountNumber, getBalance(), getInterestRate());
     }
 }
@@ -0,0 +1,161 @@
+package com.banking.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+//money is held as a long number of cents (thebe) everywhere in the model and the DAOs, so sums are exact and
+//need no objects; these helpers convert at the edges (user input, JDBC DECIMAL(15, 2) columns, display) and do
+//the arithmetic with overflow checks against the range the database can store
+public final class Money {
+    public static final long CENTS_PER_UNIT = 100;
+    //the largest amount a DECIMAL(15, 2) column holds: 9,999,999,999,999.99
+    public static final long MAX_CENTS = 999_999_999_999_999L;
+    //rates are whole parts per million, so 0.05% is 500 and interest is integer arithmetic
+    public static final long PPM = 1_000_000;
+
+    private Money() {
+    }
+    //converts an amount typed in by a user to cents, rounding half up to the nearest cent
+    public static long ofAmount(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Amount must be a number: " + amount);
+        }
+        BigDecimal cents = BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).movePointRight(2);
+        if (cents.abs().compareTo(BigDecimal.valueOf(MAX_CENTS)) > 0) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+        return cents.longValueExact();
+    }
+    //cents as a double amount, only for display and for callers that still take doubles
+    public static double toAmount(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+    //reads a DECIMAL(15, 2) value from JDBC exactly; a value with fractions of a cent is an error
+    public static long fromDecimal(BigDecimal value) {
+        return checkRange(value.movePointRight(2).longValueExact());
+    }
+    //the exact DECIMAL(15, 2) value to bind with setBigDecimal
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    public static long add(long cents, long otherCents) {
+        return checkRange(Math.addExact(cents, otherCents));
+    }
+
+    public static long subtract(long cents, long otherCents) {
+        return checkRange(Math.subtractExact(cents, otherCents));
+    }
+    //cents times a rate in parts per million, rounded to a whole cent with the given mode
+    public static long applyRate(long cents, long ratePpm, RoundingMode mode) {
+        return checkRange(divide(Math.multiplyExact(cents, ratePpm), PPM, mode));
+    }
+    //integer division rounded like BigDecimal.divide with the same mode, without creating a BigDecimal
+    public static long divide(long dividend, long divisor, RoundingMode mode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        //direction away from zero, and how the remainder compares to half the divisor (-1, 0 or 1)
+        int sign = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        long twiceRemainder = Math.abs(remainder) * 2;
+        int half = Long.compare(twiceRemainder, Math.abs(divisor));
+        boolean awayFromZero;
+        switch (mode) {
+            case UP:
+                awayFromZero = true;
+                break;
+            case DOWN:
+                awayFromZero = false;
+                break;
+            case CEILING:
+                awayFromZero = sign > 0;
+                break;
+            case FLOOR:
+                awayFromZero = sign < 0;
+                break;
+            case HALF_UP:
+                awayFromZero = half >= 0;
+                break;
+            case HALF_DOWN:
+                awayFromZero = half > 0;
+                break;
+            case HALF_EVEN:
+                awayFromZero = half > 0 || (half == 0 && (quotient & 1) != 0);
+                break;
+            default:
+                throw new ArithmeticException("Rounding necessary: " + dividend + " / " + divisor);
+        }
+        return awayFromZero ? quotient + sign : quotient;
+    }
+    //SQL for a non-negative BIGINT expression divided by a positive divisor, rounded with the given mode,
+    //for set-based statements that must round the same way as divide
+    public static String sqlDivide(String dividend, long divisor, RoundingMode mode) {
+        String quotient = "((" + dividend + ") / " + divisor + ")";
+        String remainder = "MOD(" + dividend + ", " + divisor + ")";
+        switch (mode) {
+            case DOWN:
+            case FLOOR:
+                return quotient;
+            case UP:
+            case CEILING:
+                return "(" + quotient + " + CASE WHEN " + remainder + " > 0 THEN 1 ELSE 0 END)";
+            case HALF_UP:
+                return "(" + quotient + " + CASE WHEN " + remainder + " * 2 >= " + divisor + " THEN 1 ELSE 0 END)";
+            case HALF_DOWN:
+                return "(" + quotient + " + CASE WHEN " + remainder + " * 2 > " + divisor + " THEN 1 ELSE 0 END)";
+            case HALF_EVEN:
+                return "(" + quotient + " + CASE WHEN " + remainder + " * 2 > " + divisor + " OR (" + remainder +
+                       " * 2 = " + divisor + " AND MOD(" + quotient + ", 2) = 1) THEN 1 ELSE 0 END)";
+            default:
+                throw new IllegalArgumentException("Unsupported rounding mode: " + mode);
+        }
+    }
+    //writes cents as a plain amount with two decimals, e.g. -1234 as -12.34
+    public static void appendTo(Appendable out, long cents) throws IOException {
+        if (cents < 0) {
+            out.append('-');
+        }
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        long fraction = Math.abs(cents % CENTS_PER_UNIT);
+        appendDigits(out, units, 1);
+        out.append('.');
+        appendDigits(out, fraction, 2);
+    }
+
+    public static String format(long cents) {
+        StringBuilder sb = new StringBuilder(24);
+        try {
+            appendTo(sb, cents);
+        } catch (IOException e) {
+            //a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+    //writes a non-negative number, zero-padded to at least minDigits
+    static void appendDigits(Appendable out, long value, int minDigits) throws IOException {
+        long divisor = 1;
+        int digits = 1;
+        while (digits < 19 && value / divisor >= 10) {
+            divisor *= 10;
+            digits++;
+        }
+        for (int i = digits; i < minDigits; i++) {
+            out.append('0');
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static long checkRange(long cents) {
+        if (cents > MAX_CENTS || cents < -MAX_CENTS) {
+            throw new ArithmeticException("Amount out of range: " + cents + " cents");
+        }
+        return cents;
+    }
+}
@@ -1,22 +1,22 @@
 package com.banking.model;
 //represents a savings account in the banking system
 public class SavingsAccount extends Account {
-    private static final double INTEREST_RATE = 0.0005; // 0.05% monthly
+    private static final long MONTHLY_RATE_PPM = 500; // 0.05% monthly
     
-    public SavingsAccount(String accountNumber, double initialBalance, 
+    public SavingsAccount(String accountNumber, long initialBalanceCents, 
                           String branch, Customer customer) {
-        super(accountNumber, initialBalance, branch, customer);
+        super(accountNumber, initialBalanceCents, branch, customer);
     }
     //withdrawals are not permitted from savings accounts
     @Override
-    public boolean withdraw(double amount) {
+    public boolean withdraw(long amountCents) {
         System.out.println("Withdrawals are not permitted on Savings Accounts.");
         return false;
     }
 
     @Override
-    public double calculateInterest() {
-        return balance * INTEREST_RATE;
+    public long calculateInterest() {
+        return Money.applyRate(balanceCents, MONTHLY_RATE_PPM, getInterestRounding());
     }
     
     @Override
@@ -25,12 +25,16 @@ public class SavingsAccount extends Account {
     }
     
     public double getInterestRate() {
-        return INTEREST_RATE * 100; 
+        return MONTHLY_RATE_PPM * 100.0 / Money.PPM; 
+    }
+    //monthly rate in parts per million, used by the bulk interest run
+    public static long getMonthlyRatePpm() {
+        return MONTHLY_RATE_PPM;
     }
     
     @Override
     public String toString() {
         return String.format("SavingsAccount[Number=%s, Balance=BWP %.2f, Interest=%.3f%%]",
-            accountNumber, balance, getInterestRate());
+            accountNumber, getBalance(), getInterestRate());
     }
 }
@@ -1,24 +1,30 @@
 package com.banking.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 public class Transaction {
+    //formatters are immutable and thread-safe, so one is shared instead of building one per call
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     private final String transactionId;
     private final String accountNumber;
     private final String transactionType; 
-    private final double amount;
-    private final double balanceAfter;
+    //amounts are in cents, see Money
+    private final long amountCents;
+    private final long balanceAfterCents;
     private final String description;
     private final LocalDateTime timestamp;
 	//constructor initializes all transaction details
     public Transaction(String transactionId, String accountNumber, String transactionType,
-                      double amount, double balanceAfter, String description, 
+                      long amountCents, long balanceAfterCents, String description, 
                       LocalDateTime timestamp) {
         this.transactionId = transactionId;
         this.accountNumber = accountNumber;
         this.transactionType = transactionType;
-        this.amount = amount;
-        this.balanceAfter = balanceAfter;
+        this.amountCents = amountCents;
+        this.balanceAfterCents = balanceAfterCents;
         this.description = description;
         this.timestamp = timestamp;
     }
@@ -35,12 +41,20 @@ public class Transaction {
         return transactionType;
     }
     
+    public long getAmountCents() {
+        return amountCents;
+    }
+    
+    public long getBalanceAfterCents() {
+        return balanceAfterCents;
+    }
+    //the amounts as doubles, for display
     public double getAmount() {
-        return amount;
+        return Money.toAmount(amountCents);
     }
     
     public double getBalanceAfter() {
-        return balanceAfter;
+        return Money.toAmount(balanceAfterCents);
     }
     
     public String getDescription() {
@@ -52,25 +66,69 @@ public class Transaction {
     }
     
     public String getFormattedTimestamp() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return timestamp.format(formatter);
+        return timestamp.format(TIMESTAMP_FORMAT);
     }
     //provides a string representation of the transaction
     @Override
     public String toString() {
-        return String.format("[%s] %s: BWP %.2f | Balance: BWP %.2f | %s",
-            getFormattedTimestamp(), transactionType, amount, balanceAfter, description);
+        StringBuilder sb = new StringBuilder(128);
+        try {
+            formatTo(sb);
+        } catch (IOException e) {
+            //a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
     }
     //provides a detailed report of the transaction
     public String getDetailedReport() {
-        StringBuilder report = new StringBuilder();
-        report.append("Transaction ID: ").append(transactionId).append("\n");
-        report.append("Account Number: ").append(accountNumber).append("\n");
-        report.append("Type: ").append(transactionType).append("\n");
-        report.append("Amount: BWP ").append(String.format("%.2f", amount)).append("\n");
-        report.append("Balance After: BWP ").append(String.format("%.2f", balanceAfter)).append("\n");
-        report.append("Date/Time: ").append(getFormattedTimestamp()).append("\n");
-        report.append("Description: ").append(description).append("\n");
+        StringBuilder report = new StringBuilder(256);
+        try {
+            formatDetailedReportTo(report);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         return report.toString();
     }
+    //writes the same text as toString to out; with a reused buffer nothing is allocated per transaction,
+    //which is what long histories and statements should use
+    public void formatTo(Appendable out) throws IOException {
+        out.append('[');
+        appendTimestamp(out, timestamp);
+        out.append("] ").append(transactionType).append(": BWP ");
+        Money.appendTo(out, amountCents);
+        out.append(" | Balance: BWP ");
+        Money.appendTo(out, balanceAfterCents);
+        out.append(" | ").append(description);
+    }
+    //writes the same text as getDetailedReport to out
+    public void formatDetailedReportTo(Appendable out) throws IOException {
+        out.append("Transaction ID: ").append(transactionId).append('\n');
+        out.append("Account Number: ").append(accountNumber).append('\n');
+        out.append("Type: ").append(transactionType).append('\n');
+        out.append("Amount: BWP ");
+        Money.appendTo(out, amountCents);
+        out.append('\n');
+        out.append("Balance After: BWP ");
+        Money.appendTo(out, balanceAfterCents);
+        out.append('\n');
+        out.append("Date/Time: ");
+        appendTimestamp(out, timestamp);
+        out.append('\n');
+        out.append("Description: ").append(description).append('\n');
+    }
+    //writes a time as yyyy-MM-dd HH:mm:ss, the same as getFormattedTimestamp, digit by digit
+    public static void appendTimestamp(Appendable out, LocalDateTime timestamp) throws IOException {
+        Money.appendDigits(out, timestamp.getYear(), 4);
+        out.append('-');
+        Money.appendDigits(out, timestamp.getMonthValue(), 2);
+        out.append('-');
+        Money.appendDigits(out, timestamp.getDayOfMonth(), 2);
+        out.append(' ');
+        Money.appendDigits(out, timestamp.getHour(), 2);
+        out.append(':');
+        Money.appendDigits(out, timestamp.getMinute(), 2);
+        out.append(':');
+        Money.appendDigits(out, timestamp.getSecond(), 2);
+    }
 }
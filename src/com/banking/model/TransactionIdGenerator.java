@@ -0,0 +1,82 @@
+package com.banking.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//generates 64-bit transaction ids made of milliseconds since EPOCH, a node id and a per-millisecond sequence
+//(41 + 10 + 12 bits), so ids from one node never repeat and always increase, and ids sort by time across nodes
+public class TransactionIdGenerator {
+    public static final String PREFIX = "TXN";
+    //transfers get ids of their own from the same sequence, which both of their ledger legs refer to
+    public static final String TRANSFER_PREFIX = "TRF";
+    //2024-01-01T00:00:00Z; 41 bits of milliseconds from here last until 2093
+    public static final long EPOCH = 1704067200000L;
+    //set with -Dbanking.node.id=<0..1023> when more than one instance writes to the same database
+    public static final String NODE_ID_PROPERTY = "banking.node.id";
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    //decimal digits in the largest positive long, so formatted ids compare as strings the way they compare as numbers
+    private static final int ID_DIGITS = 19;
+
+    private static final TransactionIdGenerator INSTANCE =
+        new TransactionIdGenerator(Long.getLong(NODE_ID_PROPERTY, 0L));
+
+    private final long nodeId;
+    //last issued milliseconds (since EPOCH) and sequence, packed as millis << SEQUENCE_BITS | sequence
+    private final AtomicLong lastState = new AtomicLong();
+
+    public TransactionIdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public static TransactionIdGenerator getInstance() {
+        return INSTANCE;
+    }
+    //returns the next id; lock-free, and if the clock stands still or goes back, or 4096 ids are taken
+    //in one millisecond, the sequence carries into the millisecond field so ids keep increasing
+    public long nextId() {
+        while (true) {
+            long previous = lastState.get();
+            long now = System.currentTimeMillis() - EPOCH;
+            long next = now > (previous >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : previous + 1;
+            if (lastState.compareAndSet(previous, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+    //the next id in the transactions table's format
+    public String nextTransactionId() {
+        return format(nextId());
+    }
+    //the next transfer (correlation) id, "TRF" followed by the id
+    public String nextTransferId() {
+        return format(TRANSFER_PREFIX, nextId());
+    }
+    //"TXN" followed by the id zero-padded to a fixed width, so string order matches id order
+    public static String format(long id) {
+        return format(PREFIX, id);
+    }
+
+    private static String format(String prefix, long id) {
+        String digits = Long.toString(id);
+        StringBuilder sb = new StringBuilder(prefix.length() + ID_DIGITS).append(prefix);
+        for (int i = digits.length(); i < ID_DIGITS; i++) {
+            sb.append('0');
+        }
+        return sb.append(digits).toString();
+    }
+    //the wall-clock time, in epoch milliseconds, at which an id was issued
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    public static long nodeIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+}
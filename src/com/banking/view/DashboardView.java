@@ -3,6 +3,7 @@ package com.banking.view;
 import com.banking.controller.LoginController;
 import com.banking.controller.CustomerController;
 import com.banking.controller.AccountController;
+import com.banking.dao.SequenceDAO;
 import com.banking.model.Bank;
 import com.banking.model.User;
 import javafx.application.Application;
@@ -26,7 +27,7 @@ public class DashboardView extends Application {
     //constructor initializes controllers and bank model
     public DashboardView() {
         this.loginController = LoginController.getInstance();
-        this.bank = new Bank("absa", "ABSA01");
+        this.bank = new Bank("absa", "ABSA01", new SequenceDAO());
         this.customerController = new CustomerController(bank);
         this.accountController = new AccountController(bank);
     }
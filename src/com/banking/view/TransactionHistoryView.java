@@ -18,10 +18,15 @@ import javafx.stage.Stage;
 import java.util.List;
 //this class provides a JavaFX UI for viewing transaction history of an account
 public class TransactionHistoryView extends Application {
+    //transactions shown when an account is loaded; within the recent transaction cache's default ring of 25,
+    //so repeat lookups of a busy account are answered from memory
+    private static final int RECENT_TRANSACTIONS = 20;
+
     private AccountController accountController;
     private TextField accountNumberField;
     private TableView<Transaction> transactionTable;
     private Label summaryLabel;
+    private Button showAllButton;
     private Stage primaryStage;
     
     public TransactionHistoryView(AccountController accountController) {
@@ -80,7 +85,19 @@ public class TransactionHistoryView extends Application {
             "-fx-background-radius: 5;" +
             "-fx-cursor: hand;"
         );
-        searchButton.setOnAction(e -> loadTransactionHistory());
+        searchButton.setOnAction(e -> loadTransactionHistory(false));
+        
+        showAllButton = new Button("Show All");
+        showAllButton.setStyle(
+            "-fx-background-color: #0097A7;" +
+            "-fx-text-fill: white;" +
+            "-fx-font-weight: bold;" +
+            "-fx-padding: 10 20;" +
+            "-fx-background-radius: 5;" +
+            "-fx-cursor: hand;"
+        );
+        showAllButton.setDisable(true);
+        showAllButton.setOnAction(e -> loadTransactionHistory(true));
         
         Button closeButton = new Button("Close");
         closeButton.setStyle(
@@ -96,7 +113,7 @@ public class TransactionHistoryView extends Application {
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
         
-        searchBox.getChildren().addAll(accountNumberField, searchButton, spacer, closeButton);
+        searchBox.getChildren().addAll(accountNumberField, searchButton, showAllButton, spacer, closeButton);
         
         transactionTable = createTransactionTable();
         
@@ -144,8 +161,8 @@ public class TransactionHistoryView extends Application {
         
         return table;
     }
-    //loads transaction history for the given account number
-    private void loadTransactionHistory() {
+    //loads the account's most recent transactions, or its whole history when all is true
+    private void loadTransactionHistory(boolean all) {
         String accountNumber = accountNumberField.getText().trim();
         
         if (accountNumber.isEmpty()) {
@@ -153,9 +170,14 @@ public class TransactionHistoryView extends Application {
             return;
         }
         
-        List<Transaction> transactions = accountController.getTransactionHistory(accountNumber);
+        List<Transaction> transactions = all
+            ? accountController.getTransactionHistory(accountNumber)
+            : accountController.getRecentTransactions(accountNumber, RECENT_TRANSACTIONS);
+        //a full page of recent transactions means there may be older ones to show
+        showAllButton.setDisable(all || transactions.size() < RECENT_TRANSACTIONS);
         
         if (transactions.isEmpty()) {
+            transactionTable.setItems(FXCollections.observableArrayList());
             transactionTable.setPlaceholder(new Label("No transactions found for this account"));
             summaryLabel.setText("");
         } else {
@@ -163,7 +185,7 @@ public class TransactionHistoryView extends Application {
             transactionTable.setItems(data);
             
             summaryLabel.setText(String.format(
-                "Total Transactions: %d | Account: %s", 
+                all ? "Total Transactions: %d | Account: %s" : "Latest %d Transactions | Account: %s",
                 transactions.size(), accountNumber
             ));
         }